@@ -28,10 +28,17 @@ android {
         targetCompatibility = JavaVersion.VERSION_11
     }
     buildToolsVersion = "35.0.0"
+
+    // The puzzle bank is memory-mapped straight from the APK, so it must not be compressed
+    androidResources {
+        noCompress += "bank"
+    }
 }
 
 dependencies {
     implementation("androidx.appcompat:appcompat:1.6.1")
     implementation("com.google.android.material:material:1.11.0")
     implementation("androidx.constraintlayout:constraintlayout:2.1.4")
+    testImplementation("junit:junit:4.13.2")
+    testImplementation("org.robolectric:robolectric:4.13")
 }
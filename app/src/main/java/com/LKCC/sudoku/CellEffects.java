@@ -0,0 +1,134 @@
+package com.LKCC.sudoku;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.animation.DecelerateInterpolator;
+
+// Short feedback animations over SudokuBoardView: a digit popping into place, a mistake
+// flashing, the selection sliding to its new cell. They are drawn by a few cell-sized views
+// in the parent's overlay, not by the board. An animation only moves, scales and fades its
+// view through ViewPropertyAnimator, which the RenderThread runs on its own, so the board
+// records one frame per change instead of one per animation frame.
+class CellEffects {
+    private static final int POOL = 4; // Effects running at once; the oldest is cut short
+    private static final long POP_MILLIS = 180;
+    private static final long FLASH_MILLIS = 400;
+    private static final long SLIDE_MILLIS = 120;
+    private static final float POP_SCALE = 1.6f;
+
+    private final View board;
+    private final Effect[] effects = new Effect[POOL];
+    private final DecelerateInterpolator decelerate = new DecelerateInterpolator();
+    private ViewGroup host; // Parent whose overlay holds the effects, null while detached
+    private int next;
+
+    CellEffects(View board, Context context) {
+        this.board = board;
+        for (int i = 0; i < POOL; i++) effects[i] = new Effect(context);
+    }
+
+    void attach() {
+        ViewParent parent = board.getParent();
+        if (host != null || !(parent instanceof ViewGroup)) return;
+        host = (ViewGroup) parent;
+        for (Effect effect : effects) {
+            effect.setVisibility(View.INVISIBLE);
+            host.getOverlay().add(effect);
+        }
+    }
+
+    void detach() {
+        if (host == null) return;
+        for (Effect effect : effects) {
+            effect.animate().cancel();
+            host.getOverlay().remove(effect);
+        }
+        host = null;
+    }
+
+    // A placed digit starts large and settles onto the one the board draws beneath it
+    void pop(float left, float top, float size, char glyph, Paint paint, float textScale) {
+        Effect effect = start(left, top, size);
+        if (effect == null) return;
+        effect.glyph[0] = glyph;
+        effect.text.setColor(paint.getColor());
+        effect.text.setTypeface(paint.getTypeface());
+        effect.text.setTextSize(paint.getTextSize() * textScale);
+        effect.showGlyph = true;
+        effect.invalidate();
+        effect.setScaleX(POP_SCALE);
+        effect.setScaleY(POP_SCALE);
+        effect.animate().scaleX(1).scaleY(1).alpha(0).setDuration(POP_MILLIS).setInterpolator(decelerate).withEndAction(effect.hide);
+    }
+
+    void flash(float left, float top, float size, int color) {
+        Effect effect = start(left, top, size);
+        if (effect == null) return;
+        effect.fill.setColor(color);
+        effect.showGlyph = false;
+        effect.invalidate();
+        effect.animate().alpha(0).setDuration(FLASH_MILLIS).setInterpolator(decelerate).withEndAction(effect.hide);
+    }
+
+    // A cell-sized highlight moving from one cell to another and fading as it arrives
+    void slide(float fromLeft, float fromTop, float toLeft, float toTop, float size, int color) {
+        Effect effect = start(fromLeft, fromTop, size);
+        if (effect == null) return;
+        effect.fill.setColor(color);
+        effect.showGlyph = false;
+        effect.invalidate();
+        effect.animate().translationX(toLeft - fromLeft).translationY(toTop - fromTop).alpha(0)
+                .setDuration(SLIDE_MILLIS).setInterpolator(decelerate).withEndAction(effect.hide);
+    }
+
+    // Next pooled view, reset and laid out over the cell at left/top in board pixels
+    private Effect start(float left, float top, float size) {
+        if (host == null || size <= 0) return null;
+        Effect effect = effects[next];
+        next = (next + 1) % POOL;
+        effect.animate().cancel();
+        int l = Math.round(board.getLeft() + left);
+        int t = Math.round(board.getTop() + top);
+        int s = Math.round(size);
+        effect.layout(l, t, l + s, t + s);
+        effect.setTranslationX(0);
+        effect.setTranslationY(0);
+        effect.setScaleX(1);
+        effect.setScaleY(1);
+        effect.setAlpha(1);
+        effect.setVisibility(View.VISIBLE);
+        return effect;
+    }
+
+    private static final class Effect extends View {
+        final Paint fill = new Paint();
+        final Paint text = new Paint(Paint.ANTI_ALIAS_FLAG);
+        final char[] glyph = new char[1];
+        boolean showGlyph;
+        final Runnable hide = new Runnable() {
+            @Override
+            public void run() {
+                setVisibility(View.INVISIBLE);
+            }
+        };
+
+        Effect(Context context) {
+            super(context);
+            text.setTextAlign(Paint.Align.CENTER);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            if (showGlyph) {
+                // Same baseline as the board's digits
+                canvas.drawText(glyph, 0, 1, getWidth() / 2f, getHeight() / 1.5f, text);
+            } else {
+                canvas.drawRect(0, 0, getWidth(), getHeight(), fill);
+            }
+        }
+    }
+}
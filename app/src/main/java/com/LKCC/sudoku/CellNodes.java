@@ -0,0 +1,74 @@
+package com.LKCC.sudoku;
+
+import android.graphics.Canvas;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+
+// Per-cell display lists for SudokuBoardView on hardware canvases, API 29+. Every cell has a
+// background node (tints and highlights, under the grid lines) and a foreground node (its
+// digit or pencil marks, over them). The board describes each cell's look with a key every
+// frame; a node is recorded again only when its key changes, or when it lost its recording
+// (the renderer frees those of nodes left out of a frame, e.g. cells scrolled off while
+// zoomed), and otherwise replayed as it is. A tap that moves the selection re-records the
+// cells whose highlight changed, a digit the one cell, and the frame itself is just the
+// list of nodes to draw.
+// Keys must differ whenever the drawing would; 0 means nothing to draw. Anything else the
+// drawing depends on (cell size, paints, the pencil atlas) has to reset() the nodes.
+// Only created on API 29+, so older devices never load RenderNode.
+final class CellNodes {
+    static final int BACKGROUND = 0;
+    static final int FOREGROUND = 1;
+
+    // Draws one layer of one cell, in board coordinates
+    interface Painter {
+        void paintCell(Canvas canvas, int row, int col, int cellSize, int layer);
+    }
+
+    private final RenderNode[][] nodes; // [layer][cell], created on first use
+    private final long[][] keys; // [layer][cell] -> key of the recording, 0 if none
+
+    CellNodes(int cells) {
+        nodes = new RenderNode[2][cells];
+        keys = new long[2][cells];
+    }
+
+    // Draw the cell's node for this layer, recording it first if its key changed or it has
+    // no recording
+    void draw(Canvas canvas, int layer, int row, int col, int side, int cellSize, long key, Painter painter) {
+        if (key == 0) return;
+        int cell = row * side + col;
+        RenderNode node = nodes[layer][cell];
+        if (node == null) {
+            node = new RenderNode("cell");
+            nodes[layer][cell] = node;
+        }
+        if (keys[layer][cell] != key || !node.hasDisplayList()) {
+            int left = col * cellSize;
+            int top = row * cellSize;
+            node.setPosition(left, top, left + cellSize, top + cellSize);
+            RecordingCanvas recording = node.beginRecording(cellSize, cellSize);
+            recording.translate(-left, -top);
+            painter.paintCell(recording, row, col, cellSize, layer);
+            node.endRecording();
+            keys[layer][cell] = key;
+        }
+        canvas.drawRenderNode(node);
+    }
+
+    // Record every node again when next drawn
+    void reset() {
+        for (long[] layer : keys) {
+            for (int cell = 0; cell < layer.length; cell++) layer[cell] = 0;
+        }
+    }
+
+    // Free the recordings; the nodes record again when next drawn
+    void release() {
+        for (RenderNode[] layer : nodes) {
+            for (RenderNode node : layer) {
+                if (node != null) node.discardDisplayList();
+            }
+        }
+        reset();
+    }
+}
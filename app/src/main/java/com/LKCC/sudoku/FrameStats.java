@@ -0,0 +1,107 @@
+package com.LKCC.sudoku;
+
+import com.LKCC.sudoku.engine.LatencyHistogram;
+
+import java.util.Locale;
+
+// Frame timing of the board, for the debug HUD and for reports from slow devices:
+//   draw     - SudokuBoardView.onDraw, start to end
+//   input    - a tap or number entry until the end of the onDraw that shows it
+//   interval - Choreographer vsync to vsync while the HUD runs; long ones are skipped frames
+//   frame    - FrameMetrics total duration, including the RenderThread (API 24+)
+// Each is a rolling window of the last WINDOW to 2 * WINDOW values: two LatencyHistograms
+// take turns, the older one cleared whenever the newer fills up, so recording stays a few
+// shifts and an increment on preallocated arrays. Main thread only.
+public class FrameStats {
+    public static final int WINDOW = 600; // About ten seconds of frames at 60 Hz
+    private static final long FRAME_BUDGET_NANOS = 16_666_667; // One 60 Hz vsync
+
+    private final Rolling draw = new Rolling();
+    private final Rolling input = new Rolling();
+    private final Rolling interval = new Rolling();
+    private final Rolling frame = new Rolling();
+    private long skippedFrames;
+    private long slowFrames;
+
+    public void recordDraw(long nanos) {
+        draw.record(nanos);
+    }
+
+    public void recordInput(long nanos) {
+        input.record(nanos);
+    }
+
+    // Time between two consecutive Choreographer frames; over 1.5 budgets means the main
+    // thread missed at least one vsync
+    public void recordInterval(long nanos) {
+        interval.record(nanos);
+        if (nanos > FRAME_BUDGET_NANOS * 3 / 2) skippedFrames += Math.round((double) nanos / FRAME_BUDGET_NANOS) - 1;
+    }
+
+    public void recordFrame(long nanos) {
+        frame.record(nanos);
+        if (nanos > FRAME_BUDGET_NANOS) slowFrames++;
+    }
+
+    public LatencyHistogram getDraw() { return draw.snapshot(); }
+    public LatencyHistogram getInput() { return input.snapshot(); }
+    public LatencyHistogram getInterval() { return interval.snapshot(); }
+    public LatencyHistogram getFrame() { return frame.snapshot(); }
+    public long getSkippedFrames() { return skippedFrames; }
+    public long getSlowFrames() { return slowFrames; }
+
+    public void reset() {
+        draw.reset();
+        input.reset();
+        interval.reset();
+        frame.reset();
+        skippedFrames = 0;
+        slowFrames = 0;
+    }
+
+    // One line per measure, p50/p95/p99/max in milliseconds; allocates, so only on demand
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        line(report, "draw", getDraw());
+        line(report, "input", getInput());
+        line(report, "interval", getInterval());
+        line(report, "frame", getFrame());
+        report.append(String.format(Locale.US, "skipped %d, over budget %d", skippedFrames, slowFrames));
+        return report.toString();
+    }
+
+    private static void line(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format(Locale.US, "%s p50 %.1f p95 %.1f p99 %.1f max %.1f ms (%d)\n", name,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(95) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getMax() / 1e6, histogram.getCount()));
+    }
+
+    private static final class Rolling {
+        private LatencyHistogram current = new LatencyHistogram();
+        private LatencyHistogram previous = new LatencyHistogram();
+        private final LatencyHistogram merged = new LatencyHistogram();
+
+        void record(long value) {
+            if (current.getCount() >= WINDOW) {
+                LatencyHistogram full = current;
+                current = previous;
+                current.reset();
+                previous = full;
+            }
+            current.record(value);
+        }
+
+        // Both halves of the window; shared, valid until the next call
+        LatencyHistogram snapshot() {
+            merged.reset();
+            merged.add(previous);
+            merged.add(current);
+            return merged;
+        }
+
+        void reset() {
+            current.reset();
+            previous.reset();
+        }
+    }
+}
@@ -11,24 +11,31 @@ public class GameHistory {
     private int score;
     private int mistakes;
     private boolean completed;
+    private String puzzleId; // null if the puzzle cannot be regenerated
 
     public GameHistory(String difficulty, int timeInSeconds, int score, int mistakes, boolean completed) {
+        this(difficulty, timeInSeconds, score, mistakes, completed, null);
+    }
+
+    public GameHistory(String difficulty, int timeInSeconds, int score, int mistakes, boolean completed, String puzzleId) {
         this.date = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault()).format(new Date());
         this.difficulty = difficulty;
         this.timeInSeconds = timeInSeconds;
         this.score = score;
         this.mistakes = mistakes;
         this.completed = completed;
+        this.puzzleId = puzzleId;
     }
 
     // Constructor for loading from storage
-    public GameHistory(String date, String difficulty, int timeInSeconds, int score, int mistakes, boolean completed) {
+    public GameHistory(String date, String difficulty, int timeInSeconds, int score, int mistakes, boolean completed, String puzzleId) {
         this.date = date;
         this.difficulty = difficulty;
         this.timeInSeconds = timeInSeconds;
         this.score = score;
         this.mistakes = mistakes;
         this.completed = completed;
+        this.puzzleId = puzzleId;
     }
 
     // Getters
@@ -38,6 +45,7 @@ public class GameHistory {
     public int getScore() { return score; }
     public int getMistakes() { return mistakes; }
     public boolean isCompleted() { return completed; }
+    public String getPuzzleId() { return puzzleId; }
 
     public String getFormattedTime() {
         int minutes = timeInSeconds / 60;
@@ -46,7 +54,8 @@ public class GameHistory {
     }
 
     public String toString() {
-        return date + "|" + difficulty + "|" + timeInSeconds + "|" + score + "|" + mistakes + "|" + completed;
+        return date + "|" + difficulty + "|" + timeInSeconds + "|" + score + "|" + mistakes + "|" + completed
+                + (puzzleId != null ? "|" + puzzleId : "");
     }
 
     public static GameHistory fromString(String str) {
@@ -59,7 +68,8 @@ public class GameHistory {
                     Integer.parseInt(parts[2]), // time
                     Integer.parseInt(parts[3]), // score
                     Integer.parseInt(parts[4]), // mistakes
-                    Boolean.parseBoolean(parts[5]) // completed
+                    Boolean.parseBoolean(parts[5]), // completed
+                    parts.length >= 7 ? parts[6] : null // puzzle ID, missing in older entries
                 );
             }
         } catch (Exception e) {
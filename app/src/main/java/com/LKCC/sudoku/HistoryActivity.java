@@ -89,6 +89,7 @@ public class HistoryActivity extends AppCompatActivity {
         TextView tvBestTimeEasy = findViewById(R.id.tvBestTimeEasy);
         TextView tvBestTimeMedium = findViewById(R.id.tvBestTimeMedium);
         TextView tvBestTimeHard = findViewById(R.id.tvBestTimeHard);
+        TextView tvBestTimeExpert = findViewById(R.id.tvBestTimeExpert);
 
         int totalGames = historyManager.getTotalGames();
         int completedGames = historyManager.getCompletedGames();
@@ -104,10 +105,12 @@ public class HistoryActivity extends AppCompatActivity {
         int bestTimeEasy = historyManager.getBestTime("easy");
         int bestTimeMedium = historyManager.getBestTime("medium");
         int bestTimeHard = historyManager.getBestTime("hard");
+        int bestTimeExpert = historyManager.getBestTime("expert");
 
         tvBestTimeEasy.setText("Easy: " + (bestTimeEasy == -1 ? "--:--" : formatTime(bestTimeEasy)));
         tvBestTimeMedium.setText("Medium: " + (bestTimeMedium == -1 ? "--:--" : formatTime(bestTimeMedium)));
         tvBestTimeHard.setText("Hard: " + (bestTimeHard == -1 ? "--:--" : formatTime(bestTimeHard)));
+        tvBestTimeExpert.setText("Expert: " + (bestTimeExpert == -1 ? "--:--" : formatTime(bestTimeExpert)));
     }
 
     private View createGameHistoryView(GameHistory game) {
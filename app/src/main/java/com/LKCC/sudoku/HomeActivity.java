@@ -5,9 +5,19 @@ import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
 import android.widget.Spinner;
+import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.LKCC.sudoku.engine.GridShape;
+import com.LKCC.sudoku.engine.PuzzleBank;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.Variant;
+
 public class HomeActivity extends AppCompatActivity {
+    private static final int[] GRID_SIZES = {4, 6, 9, 16, 25}; // Same order as @array/grid_sizes
+    private static final int DEFAULT_SIZE_POSITION = 2; // 9x9
+    private static final Variant[] VARIANTS = Variant.values(); // Same order as @array/variants
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -16,13 +26,35 @@ public class HomeActivity extends AppCompatActivity {
         Button btnPlay = findViewById(R.id.btnPlayGame);
         Button btnHistory = findViewById(R.id.btnHistory);
         Spinner spinnerDifficulty = findViewById(R.id.spinnerDifficulty);
+        Spinner spinnerSize = findViewById(R.id.spinnerSize);
+        spinnerSize.setSelection(DEFAULT_SIZE_POSITION);
+        Spinner spinnerVariant = findViewById(R.id.spinnerVariant);
+
+        // Warm up the puzzle pools while the player picks a difficulty. Expert puzzles keep
+        // every core busy for a while, so those are only prefetched once Expert is played.
+        // Modes the bundled puzzle bank covers need no generation at all.
+        PuzzleBank bank = PuzzleBankAsset.get(this);
+        for (MainActivity.GameMode mode : MainActivity.GameMode.values()) {
+            boolean banked = bank != null && bank.findBand(mode.getClues(), mode.getEasiest(), mode.getHardest()) >= 0;
+            if (!banked && mode.getClues() >= PuzzleGenerator.MINIMAL_SEARCH_BELOW) {
+                PuzzlePool.getInstance().prefetch(mode);
+            }
+        }
 
         btnPlay.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 int selected = spinnerDifficulty.getSelectedItemPosition();
+                int size = GRID_SIZES[spinnerSize.getSelectedItemPosition()];
+                Variant variant = VARIANTS[spinnerVariant.getSelectedItemPosition()];
+                if (!GridShape.supports(variant, size)) {
+                    Toast.makeText(HomeActivity.this, variant.getLabel() + " is only played on 9x9", Toast.LENGTH_SHORT).show();
+                    return;
+                }
                 Intent intent = new Intent(HomeActivity.this, MainActivity.class);
-                intent.putExtra("difficulty", selected); // 0:Easy, 1:Medium, 2:Hard
+                intent.putExtra("difficulty", selected); // 0:Easy, 1:Medium, 2:Hard, 3:Expert
+                intent.putExtra("size", size);
+                intent.putExtra("variant", variant.name());
                 startActivity(intent);
             }
         });
@@ -1,17 +1,36 @@
 package com.LKCC.sudoku;
 
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.FrameMetrics;
+import android.view.Gravity;
 import android.view.View;
+import android.view.Window;
 import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.LKCC.sudoku.engine.CageLayout;
+import com.LKCC.sudoku.engine.CancellationToken;
+import com.LKCC.sudoku.engine.CandidateGrid;
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.GridShape;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.Technique;
+import com.LKCC.sudoku.engine.Variant;
+
 public class MainActivity extends AppCompatActivity implements SudokuBoardView.SudokuListener {
     private Handler timerHandler = new Handler();
+    private Object frameMetricsListener; // Window.OnFrameMetricsAvailableListener while the HUD is on; API 24+
     private int secondsElapsed = 0;
     private boolean isTimerRunning = false;
     private boolean isPaused = false; // Add pause state tracking
@@ -33,12 +52,41 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         }
     };
     public enum GameMode {
-        EASY, MEDIUM, HARD
+        EASY(Difficulty.EASY),
+        MEDIUM(Difficulty.MEDIUM),
+        HARD(Difficulty.HARD),
+        EXPERT(Difficulty.EXPERT);
+
+        private final Difficulty difficulty;
+
+        GameMode(Difficulty difficulty) {
+            this.difficulty = difficulty;
+        }
+
+        public Difficulty getDifficulty() {
+            return difficulty;
+        }
+
+        public int getClues() {
+            return difficulty.getClues();
+        }
+
+        public Technique getEasiest() {
+            return difficulty.getEasiest();
+        }
+
+        public Technique getHardest() {
+            return difficulty.getHardest();
+        }
     }
     private GameMode mode = GameMode.EASY;
+    private GameMode playedAs; // Easier mode the current large board plays as, or null
+    private GridShape shape = GridShape.CLASSIC;
     private int mistakes = 0;
     private int hintsUsed = 0;
     private static final int MAX_HINTS = 3;
+    private static final long GENERATION_BUDGET_MS = 2000; // Clue removal stops early after this long
+    private static final int MAX_REPEAT_REJECTIONS = 20; // Already played puzzles skipped per source before moving on
     private TextView tvMistakes;
     private TextView tvScore;
     private TextView tvDifficulty;
@@ -48,6 +96,7 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
     private SudokuBoardView sudokuBoard;
     private TextView[] numberCountViews = new TextView[9]; // Array to hold the small number count TextViews
     private TextView[] numberButtons = new TextView[9]; // Array to hold the number buttons
+    private static final int MAX_KEYS_PER_ROW = 9; // Keypads for 16x16 and 25x25 wrap onto more rows
     private View btnPause; // Change to View since it's an ImageView in layout
     private View btnSave; // Add save button reference
     private View btnLoad; // Add load button reference
@@ -72,10 +121,16 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
             case 2:
                 mode = GameMode.HARD;
                 break;
+            case 3:
+                mode = GameMode.EXPERT;
+                break;
             default:
                 mode = GameMode.EASY;
                 break;
         }
+        String variant = getIntent().getStringExtra("variant");
+        shape = GridShape.of(getIntent().getIntExtra("size", GridShape.CLASSIC.getSize()),
+                variant != null ? Variant.valueOf(variant) : Variant.STANDARD);
 
         tvTimer = findViewById(R.id.tvTimer);
         tvFinished = findViewById(R.id.tvFinished);
@@ -102,20 +157,11 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         tvfastPencilon.setText("OFF");
 
         // Set difficulty display to match the game difficulty
-        switch (mode) {
-            case EASY:
-                tvDifficulty.setText("Easy");
-                break;
-            case MEDIUM:
-                tvDifficulty.setText("Medium");
-                break;
-            case HARD:
-                tvDifficulty.setText("Hard");
-                break;
-        }
+        tvDifficulty.setText(getDifficultyString());
 
         sudokuBoard = findViewById(R.id.sudokuBoard);
         sudokuBoard.setSudokuListener(this);
+        sudokuBoard.setShape(shape);
 
         // Set default modes to OFF - ensure they start in the correct state
         sudokuBoard.setPencilMode(false);
@@ -133,36 +179,22 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         }
 
         // Set clues based on mode
-        int clues = 50;
-        switch (mode) {
-            case EASY:
-                clues = 50;
-                break;
-            case MEDIUM:
-                clues = 40;
-                break;
-            case HARD:
-                clues = 30;
-                break;
+        sudokuBoard.setClues(mode.getDifficulty().getClues(shape));
+        sudokuBoard.setTechniqueRange(mode.getEasiest(), mode.getHardest());
+        sudokuBoard.setPuzzleBank(PuzzleBankAsset.get(this));
+        int[] buttonIds = {R.id.btnNum1, R.id.btnNum2, R.id.btnNum3, R.id.btnNum4, R.id.btnNum5, R.id.btnNum6, R.id.btnNum7, R.id.btnNum8, R.id.btnNum9};
+        for (int i = 0; i < buttonIds.length; i++) {
+            numberButtons[i] = findViewById(buttonIds[i]); // Initialize the number button in the array
+        }
+        if (shape.getSize() != GridShape.CLASSIC.getSize()) {
+            buildKeypad(shape.getSize());
         }
-        sudokuBoard.setClues(clues);
-        sudokuBoard.generateNewPuzzle();
+        bindNumberButtons();
+
+        startPuzzle();
 
         // Update number counts after puzzle generation
         updateNumberCounts();
-
-        int[] buttonIds = {R.id.btnNum1, R.id.btnNum2, R.id.btnNum3, R.id.btnNum4, R.id.btnNum5, R.id.btnNum6, R.id.btnNum7, R.id.btnNum8, R.id.btnNum9};
-        for (int i = 0; i < buttonIds.length; i++) {
-            final int number = i + 1;
-            TextView btn = findViewById(buttonIds[i]);
-            numberButtons[i] = btn; // Initialize the number button in the array
-            btn.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    sudokuBoard.setNumber(number);
-                }
-            });
-        }
         Button btnHint = findViewById(R.id.btnHint);
         btnHint.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -266,6 +298,17 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         isTimerRunning = true;
         timerHandler.postDelayed(timerRunnable, 1000);
 
+        // Debug builds: long-press the timer for the frame timing HUD
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            tvTimer.setOnLongClickListener(new View.OnLongClickListener() {
+                @Override
+                public boolean onLongClick(View v) {
+                    toggleFrameStats();
+                    return true;
+                }
+            });
+        }
+
         // Initialize winning screen buttons
         setupWinningScreenButtons();
 
@@ -273,6 +316,179 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         setupLosingScreenButtons();
     }
 
+    // Replace the nine keys of the layout with one key per digit of the grid, styled the same
+    // way and wrapped onto as many rows as needed
+    private void buildKeypad(int digits) {
+        LinearLayout keypad = findViewById(R.id.keypadBar);
+        keypad.removeAllViews();
+        keypad.setOrientation(LinearLayout.VERTICAL);
+        numberButtons = new TextView[digits];
+        numberCountViews = new TextView[digits];
+
+        int rows = (digits + MAX_KEYS_PER_ROW - 1) / MAX_KEYS_PER_ROW;
+        int perRow = (digits + rows - 1) / rows;
+        LinearLayout row = null;
+        for (int i = 0; i < digits; i++) {
+            if (i % perRow == 0) {
+                row = new LinearLayout(this);
+                row.setOrientation(LinearLayout.HORIZONTAL);
+                row.setGravity(Gravity.CENTER);
+                keypad.addView(row, new LinearLayout.LayoutParams(
+                        LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+            }
+            LinearLayout key = new LinearLayout(this);
+            key.setOrientation(LinearLayout.VERTICAL);
+            key.setGravity(Gravity.CENTER);
+
+            TextView button = new TextView(this);
+            button.setText(String.valueOf(GridShape.symbol(i + 1)));
+            button.setTextSize(TypedValue.COMPLEX_UNIT_SP, 24);
+            button.setGravity(Gravity.CENTER);
+            button.setBackgroundColor(0xFFFFFFFF);
+            button.setTextColor(0xFF2196F3);
+            key.addView(button, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, dp(40)));
+
+            TextView count = new TextView(this);
+            count.setTextSize(TypedValue.COMPLEX_UNIT_SP, 12);
+            count.setGravity(Gravity.CENTER);
+            count.setTextColor(0xFF757575);
+            key.addView(count, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, dp(20)));
+
+            row.addView(key, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1));
+            numberButtons[i] = button;
+            numberCountViews[i] = count;
+        }
+        // Keep the last row's keys as wide as the others
+        for (int i = digits; i < rows * perRow; i++) {
+            row.addView(new View(this), new LinearLayout.LayoutParams(0, 0, 1));
+        }
+    }
+
+    private void bindNumberButtons() {
+        for (int i = 0; i < numberButtons.length; i++) {
+            final int number = i + 1;
+            numberButtons[i].setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    sudokuBoard.setNumber(number);
+                }
+            });
+        }
+    }
+
+    private int dp(int value) {
+        return Math.round(value * getResources().getDisplayMetrics().density);
+    }
+
+    // Start the board on a prefetched puzzle, generating one in the background if the pool is empty.
+    // Puzzles the player has already played, in any disguise, are skipped. The bank, the pool
+    // and the played-puzzle record only hold standard 9x9 puzzles; other shapes and variants are
+    // always generated.
+    private void startPuzzle() {
+        playedAs = null;
+        tvDifficulty.setText(getDifficultyString());
+        if (shape != GridShape.CLASSIC) {
+            sudokuBoard.generateNewPuzzleAsync(new CancellationToken(GENERATION_BUDGET_MS), new SudokuBoardView.GenerationCallback() {
+                @Override
+                public void onPuzzleReady(Puzzle puzzle) {
+                    labelReachedDifficulty(puzzle.getBoard(), true);
+                    updateNumberCounts();
+                }
+
+                @Override
+                public void onGenerationFailed(Exception error) {
+                    showGenerationFailed(error);
+                }
+            });
+            return;
+        }
+        // Pool, then bank, then live generation, skipping puzzles played before. The first
+        // pool take is a constant-time dequeue done here, so the pool's hit and miss counts
+        // cover every start; the played checks and any further takes run on the generation
+        // thread. After a miss the pool is not asked again.
+        final PlayedPuzzles played = PlayedPuzzles.getInstance(this);
+        final GameMode poolMode = mode;
+        final Puzzle pooled = PuzzlePool.getInstance().take(poolMode);
+        SudokuBoardView.PuzzleSource pool = pooled == null ? null : new SudokuBoardView.PuzzleSource() {
+            private Puzzle first = pooled;
+
+            @Override
+            public Puzzle next() {
+                if (first == null) return PuzzlePool.getInstance().take(poolMode);
+                Puzzle puzzle = first;
+                first = null;
+                return puzzle;
+            }
+        };
+        SudokuBoardView.PuzzleFilter unplayed = new SudokuBoardView.PuzzleFilter() {
+            @Override
+            public boolean accept(int[][] clues) {
+                return !played.contains(clues);
+            }
+        };
+        sudokuBoard.generateNewPuzzleAsync(new CancellationToken(GENERATION_BUDGET_MS), pool, unplayed,
+                MAX_REPEAT_REJECTIONS, new SudokuBoardView.GenerationCallback() {
+            @Override
+            public void onPuzzleReady(Puzzle puzzle) {
+                updateNumberCounts();
+            }
+
+            @Override
+            public void onGenerationFailed(Exception error) {
+                showGenerationFailed(error);
+            }
+        });
+    }
+
+    // Grids larger than 9x9 stop removing clues short of the Hard and Expert counts (see
+    // PuzzleGenerator). Label such a board with the difficulty it actually plays as, in the
+    // header and in the history, and say so when it is new.
+    private void labelReachedDifficulty(int[][] clues, boolean announce) {
+        playedAs = null;
+        if (shape.getActiveCellCount() > CandidateGrid.CELLS) {
+            int count = 0;
+            for (int[] row : clues) {
+                for (int digit : row) {
+                    if (digit != 0) count++;
+                }
+            }
+            Difficulty reached = Difficulty.reached(shape, count);
+            for (GameMode easier : GameMode.values()) {
+                if (easier.getDifficulty() == reached && easier.ordinal() < mode.ordinal()) playedAs = easier;
+            }
+            if (playedAs != null && announce) {
+                Toast.makeText(this, "This board keeps " + count * 100 / shape.getActiveCellCount()
+                        + "% of its cells as clues, so it plays as " + getDifficultyString(), Toast.LENGTH_LONG).show();
+            }
+        }
+        tvDifficulty.setText(getDifficultyString());
+    }
+
+    // Offer a retry, which starts over on the generation thread with a fresh token and
+    // budget. Generating on the UI thread instead would freeze input for seconds on large
+    // grids and Expert, and a failure that repeats would just happen there again.
+    private void showGenerationFailed(Exception error) {
+        Log.e("MainActivity", "Puzzle generation failed", error);
+        if (isFinishing()) return;
+        new AlertDialog.Builder(this)
+            .setTitle("No puzzle")
+            .setMessage("A new puzzle could not be generated.")
+            .setPositiveButton("Retry", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    startPuzzle();
+                }
+            })
+            .setNegativeButton("Back home", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    finish();
+                }
+            })
+            .setCancelable(false)
+            .show();
+    }
+
     // Method to toggle pause state
     private void togglePause() {
         isPaused = !isPaused;
@@ -296,31 +512,37 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         }
     }
 
-    // Add method to update number counts
+    // Refresh every number button; for new, loaded and restarted games. Single moves
+    // arrive through onCellChanged and only touch the digits they changed.
     private void updateNumberCounts() {
         if (sudokuBoard != null) {
-            int[] remainingCounts = sudokuBoard.getAllRemainingCounts();
-            for (int i = 0; i < 9; i++) {
-                if (numberCountViews[i] != null) {
-                    if (remainingCounts[i] > 0) {
-                        numberCountViews[i].setText(String.valueOf(remainingCounts[i]));
-                    } else {
-                        numberCountViews[i].setText("");
-                    }
-                }
+            for (int digit = 1; digit <= numberButtons.length; digit++) {
+                updateNumberCount(digit);
+            }
+        }
+    }
 
-                // Update number button appearance and clickability
-                if (numberButtons[i] != null) {
-                    if (remainingCounts[i] <= 0) {
-                        // Make button transparent and unclickable when no numbers left
-                        numberButtons[i].setAlpha(0f);
-                        numberButtons[i].setClickable(false);
-                    } else {
-                        // Restore normal appearance and clickability
-                        numberButtons[i].setAlpha(1f);
-                        numberButtons[i].setClickable(true);
-                    }
-                }
+    private void updateNumberCount(int digit) {
+        int i = digit - 1;
+        int remaining = sudokuBoard.getRemainingCount(digit);
+        if (numberCountViews[i] != null) {
+            if (remaining > 0) {
+                numberCountViews[i].setText(String.valueOf(remaining));
+            } else {
+                numberCountViews[i].setText("");
+            }
+        }
+
+        // Update number button appearance and clickability
+        if (numberButtons[i] != null) {
+            if (remaining <= 0) {
+                // Make button transparent and unclickable when no numbers left
+                numberButtons[i].setAlpha(0f);
+                numberButtons[i].setClickable(false);
+            } else {
+                // Restore normal appearance and clickability
+                numberButtons[i].setAlpha(1f);
+                numberButtons[i].setClickable(true);
             }
         }
     }
@@ -340,7 +562,6 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
     public void onCorrectBoxClick() {
         score += Math.max(200,(int)((6000-1000*Math.log1p((double)secondsElapsed/10))/3)); // Add 10 points for correct placement
         tvScore.setText("Score: " + score);
-        updateNumberCounts(); // Update number counts when board changes
     }
 
     @Override
@@ -358,7 +579,6 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
             // Show the full-screen losing overlay
             losingScreen.setVisibility(View.VISIBLE);
         }
-        updateNumberCounts(); // Update number counts when board changes
     }
 
     // Add this new method to handle when no cell is selected
@@ -369,12 +589,33 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
 
     @Override
     public void onBoardChanged() {
-        updateNumberCounts(); // Update number counts whenever board changes
+        // Number counts follow onCellChanged and onCellsChanged
     }
 
-    private void saveGameToHistory(boolean completed) {
+    @Override
+    public void onCellChanged(int row, int col, int oldValue, int newValue, int changedDigits) {
+        updateNumberCounts(changedDigits);
+    }
+
+    @Override
+    public void onCellsChanged(int changedDigits) {
+        updateNumberCounts(changedDigits);
+    }
+
+    // Refresh the number buttons of the digits in a CandidateGrid.bit mask
+    private void updateNumberCounts(int changedDigits) {
+        for (int digit = 1; changedDigits != 0 && digit <= numberButtons.length; digit++) {
+            if ((changedDigits & CandidateGrid.bit(digit)) != 0) {
+                updateNumberCount(digit);
+                changedDigits &= ~CandidateGrid.bit(digit);
+            }
+        }
+    }
+
+    // Mode name as shown and kept in the history, with the grid size unless it is 9x9
+    private String getDifficultyString() {
         String difficultyString;
-        switch (mode) {
+        switch (playedAs != null ? playedAs : mode) {
             case EASY:
                 difficultyString = "Easy";
                 break;
@@ -384,24 +625,37 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
             case HARD:
                 difficultyString = "Hard";
                 break;
+            case EXPERT:
+                difficultyString = "Expert";
+                break;
             default:
                 difficultyString = "Easy";
         }
+        if (shape != GridShape.CLASSIC) difficultyString += " " + shape;
+        return difficultyString;
+    }
 
+    private void saveGameToHistory(boolean completed) {
         GameHistory gameHistory = new GameHistory(
-            difficultyString,
+            getDifficultyString(),
             secondsElapsed,
             score,
             mistakes,
-            completed
+            completed,
+            sudokuBoard.getPuzzleId()
         );
 
         historyManager.saveGameHistory(gameHistory);
+        if (shape == GridShape.CLASSIC) {
+            PlayedPuzzles.getInstance(this).add(sudokuBoard.getInitialBoard());
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        sudokuBoard.cancelPuzzleGeneration();
+        removeFrameMetricsListener(); // Still registered if the HUD was on
         // Save game history if the game was in progress when destroyed
         if (isTimerRunning && secondsElapsed > 30) { // Only save if played for more than 30 seconds
             saveGameToHistory(false);
@@ -430,6 +684,37 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         updateHintCountDisplay();
     }
 
+    // Frame timing HUD on the board, with whole-frame durations from FrameMetrics on API 24+.
+    // Turning it off writes the report to the log before the numbers are dropped.
+    private void toggleFrameStats() {
+        FrameStats stats = sudokuBoard.getFrameStats();
+        if (stats == null) {
+            sudokuBoard.setFrameStatsEnabled(true);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                frameMetricsListener = new Window.OnFrameMetricsAvailableListener() {
+                    @Override
+                    public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCount) {
+                        FrameStats current = sudokuBoard.getFrameStats();
+                        if (current != null) current.recordFrame(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+                    }
+                };
+                // Delivered on the main thread, which owns the histograms
+                getWindow().addOnFrameMetricsAvailableListener((Window.OnFrameMetricsAvailableListener) frameMetricsListener, timerHandler);
+            }
+        } else {
+            Log.i("FrameStats", stats.report());
+            removeFrameMetricsListener();
+            sudokuBoard.setFrameStatsEnabled(false);
+        }
+    }
+
+    private void removeFrameMetricsListener() {
+        if (frameMetricsListener != null) {
+            getWindow().removeOnFrameMetricsAvailableListener((Window.OnFrameMetricsAvailableListener) frameMetricsListener);
+            frameMetricsListener = null;
+        }
+    }
+
     // Method to setup winning screen buttons
     private void setupWinningScreenButtons() {
         Button btnOneMoreGame = findViewById(R.id.btnOneMoreGame);
@@ -499,8 +784,8 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         tvFinished.setVisibility(View.GONE);
         updateHintCountDisplay();
 
-        // Generate new puzzle with same difficulty
-        sudokuBoard.generateNewPuzzle();
+        // Start the same puzzle over
+        sudokuBoard.restartPuzzle();
         updateNumberCounts();
 
         // Restart timer
@@ -526,7 +811,7 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         updateHintCountDisplay();
 
         // Generate new puzzle with same difficulty
-        sudokuBoard.generateNewPuzzle();
+        startPuzzle();
         updateNumberCounts();
 
         // Restart timer
@@ -556,24 +841,35 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         StringBuilder solutionStr = new StringBuilder();
         StringBuilder pencilMarksStr = new StringBuilder();
 
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
+        int size = shape.getSize();
+        int side = shape.getSide(); // Samurai saves its inactive cells as 0 too
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
                 currentBoardStr.append(currentBoard[i][j]).append(",");
                 initialBoardStr.append(initialBoard[i][j]).append(",");
                 solutionStr.append(solution[i][j]).append(",");
 
                 // Save pencil marks for each cell
-                for (int k = 1; k <= 9; k++) {
+                for (int k = 1; k <= size; k++) {
                     pencilMarksStr.append(pencilMarks[i][j][k] ? "1" : "0");
                 }
                 pencilMarksStr.append(",");
             }
         }
 
-        // Save all game state
+        // Save all game state. A reproducible puzzle is stored by its ID; the clues and
+        // solution are regenerated from it on load.
+        String puzzleId = sudokuBoard.getPuzzleId();
         editor.putString("currentBoard", currentBoardStr.toString());
-        editor.putString("initialBoard", initialBoardStr.toString());
-        editor.putString("solution", solutionStr.toString());
+        if (puzzleId != null) {
+            editor.putString("puzzleId", puzzleId);
+            editor.remove("initialBoard");
+            editor.remove("solution");
+        } else {
+            editor.remove("puzzleId");
+            editor.putString("initialBoard", initialBoardStr.toString());
+            editor.putString("solution", solutionStr.toString());
+        }
         editor.putString("pencilMarks", pencilMarksStr.toString());
         editor.putInt("secondsElapsed", secondsElapsed);
         editor.putInt("score", score);
@@ -581,6 +877,24 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         editor.putInt("hintsUsed", hintsUsed);
         editor.putInt("difficulty", difficulty);
         editor.putString("gameMode", mode.toString());
+        editor.putInt("size", size);
+        // Jigsaw games keep their region layout, one region per cell
+        GridShape layout = sudokuBoard.getLayout();
+        editor.putString("variant", layout.getVariant().name());
+        if (!layout.hasRegularBoxes()) {
+            editor.putString("regions", join(layout.getRegions()));
+        } else {
+            editor.remove("regions");
+        }
+        // Killer games keep their cages: the cage of every cell, then the sum of every cage
+        CageLayout cages = sudokuBoard.getCages();
+        if (cages != null) {
+            editor.putString("cages", join(cages.getCages()));
+            editor.putString("cageSums", join(cages.getSums()));
+        } else {
+            editor.remove("cages");
+            editor.remove("cageSums");
+        }
         editor.putBoolean("pencilMode", sudokuBoard.isPencilMode());
         editor.putBoolean("fastPencilMode", sudokuBoard.isfastPencilMode());
         editor.putBoolean("gameExists", true);
@@ -589,23 +903,79 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
         Toast.makeText(this, "Game saved successfully!", Toast.LENGTH_SHORT).show();
     }
 
+    // Comma-separated form of the region and cage lists in the save
+    private static String join(int[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (int value : values) {
+            builder.append(value).append(",");
+        }
+        return builder.toString();
+    }
+
+    private static int[] split(String joined) {
+        String[] parts = joined.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i]);
+        }
+        return values;
+    }
+
     // Method to load saved game state
     private void loadGameState() {
-        SharedPreferences prefs = getSharedPreferences("SudokuGameSave", MODE_PRIVATE);
+        final SharedPreferences prefs = getSharedPreferences("SudokuGameSave", MODE_PRIVATE);
 
         if (!prefs.getBoolean("gameExists", false)) {
             Toast.makeText(this, "No saved game found", Toast.LENGTH_SHORT).show();
             return;
         }
 
+        // Regenerate clues and solution from the puzzle ID when there is one. That is a full
+        // generation run, so it goes to the generation thread and loading finishes afterwards.
+        final String puzzleId = prefs.getString("puzzleId", null);
+        if (puzzleId == null) {
+            loadGameState(prefs, null, null);
+            return;
+        }
+        sudokuBoard.rebuildPuzzleAsync(puzzleId, new SudokuBoardView.GenerationCallback() {
+            @Override
+            public void onPuzzleReady(Puzzle puzzle) {
+                loadGameState(prefs, puzzle, puzzleId);
+            }
+
+            @Override
+            public void onGenerationFailed(Exception error) {
+                if (error instanceof IllegalArgumentException) {
+                    loadGameState(prefs, null, null); // Unknown generator version
+                } else {
+                    Toast.makeText(MainActivity.this, "Error loading saved game", Toast.LENGTH_SHORT).show();
+                    error.printStackTrace();
+                }
+            }
+        });
+    }
+
+    // Rest of loadGameState, with the puzzle rebuilt from its ID or null to use the saved clues
+    private void loadGameState(SharedPreferences prefs, Puzzle puzzle, String puzzleId) {
         try {
             // Load game state
             String currentBoardStr = prefs.getString("currentBoard", "");
             String initialBoardStr = prefs.getString("initialBoard", "");
             String solutionStr = prefs.getString("solution", "");
             String pencilMarksStr = prefs.getString("pencilMarks", "");
+            int size = prefs.getInt("size", GridShape.CLASSIC.getSize());
+            Variant variant = Variant.valueOf(prefs.getString("variant", Variant.STANDARD.name()));
+            GridShape savedShape = GridShape.of(size, variant);
+            GridShape savedLayout = savedShape;
+            if (variant == Variant.JIGSAW) {
+                savedLayout = GridShape.jigsaw(size, split(prefs.getString("regions", "")));
+            }
+            CageLayout cages = null;
+            if (variant == Variant.KILLER) {
+                cages = new CageLayout(split(prefs.getString("cages", "")), split(prefs.getString("cageSums", "")));
+            }
 
-            if (currentBoardStr.isEmpty() || initialBoardStr.isEmpty() || solutionStr.isEmpty()) {
+            if (currentBoardStr.isEmpty() || (puzzle == null && (initialBoardStr.isEmpty() || solutionStr.isEmpty()))) {
                 Toast.makeText(this, "Invalid saved game data", Toast.LENGTH_SHORT).show();
                 return;
             }
@@ -616,23 +986,26 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
             String[] solutionData = solutionStr.split(",");
             String[] pencilMarksData = pencilMarksStr.split(",");
 
-            int[][] currentBoard = new int[9][9];
-            int[][] initialBoard = new int[9][9];
-            int[][] solution = new int[9][9];
-            boolean[][][] pencilMarks = new boolean[9][9][10];
+            int[][] currentBoard = savedShape.newBoard();
+            int[][] initialBoard = puzzle != null ? puzzle.getBoard() : savedShape.newBoard();
+            int[][] solution = puzzle != null ? puzzle.getSolution() : savedShape.newBoard();
+            int side = savedShape.getSide();
+            boolean[][][] pencilMarks = new boolean[side][side][size + 1];
 
             // Restore board states
             int index = 0;
-            for (int i = 0; i < 9; i++) {
-                for (int j = 0; j < 9; j++) {
+            for (int i = 0; i < side; i++) {
+                for (int j = 0; j < side; j++) {
                     currentBoard[i][j] = Integer.parseInt(currentBoardData[index]);
-                    initialBoard[i][j] = Integer.parseInt(initialBoardData[index]);
-                    solution[i][j] = Integer.parseInt(solutionData[index]);
+                    if (puzzle == null) {
+                        initialBoard[i][j] = Integer.parseInt(initialBoardData[index]);
+                        solution[i][j] = Integer.parseInt(solutionData[index]);
+                    }
 
                     // Restore pencil marks
                     if (index < pencilMarksData.length && !pencilMarksData[index].isEmpty()) {
                         String cellPencilMarks = pencilMarksData[index];
-                        for (int k = 1; k <= 9 && k-1 < cellPencilMarks.length(); k++) {
+                        for (int k = 1; k <= size && k-1 < cellPencilMarks.length(); k++) {
                             pencilMarks[i][j][k] = cellPencilMarks.charAt(k-1) == '1';
                         }
                     }
@@ -659,21 +1032,19 @@ public class MainActivity extends AppCompatActivity implements SudokuBoardView.S
             tvMistakes.setText("Mistakes: " + mistakes + "/3");
             updateHintCountDisplay();
 
-            // Set difficulty display
-            switch (mode) {
-                case EASY:
-                    tvDifficulty.setText("Easy");
-                    break;
-                case MEDIUM:
-                    tvDifficulty.setText("Medium");
-                    break;
-                case HARD:
-                    tvDifficulty.setText("Hard");
-                    break;
+            // A game of another size needs its own keypad
+            if (savedShape.getSize() != shape.getSize()) {
+                buildKeypad(savedShape.getSize());
+                bindNumberButtons();
             }
+            shape = savedShape;
+            sudokuBoard.setClues(mode.getDifficulty().getClues(shape));
+
+            // Set difficulty display
+            labelReachedDifficulty(initialBoard, false);
 
             // Restore sudoku board state
-            sudokuBoard.loadGameState(currentBoard, initialBoard, solution, pencilMarks);
+            sudokuBoard.loadGameState(savedLayout, cages, currentBoard, initialBoard, solution, pencilMarks, puzzleId);
 
             // Restore game modes
             boolean pencilMode = prefs.getBoolean("pencilMode", false);
@@ -0,0 +1,154 @@
+package com.LKCC.sudoku;
+
+import android.content.Context;
+
+import com.LKCC.sudoku.engine.BloomFilter;
+import com.LKCC.sudoku.engine.Canonicalizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+// Remembers every puzzle the player has played, so a new game never repeats one, not even
+// a relabelled, rotated or shuffled copy. Puzzles are reduced to their canonical form and
+// its fingerprint goes into a Bloom filter kept in the app's files directory.
+// 2^20 bits (128 KB) with 10 probes keeps false "already played" answers below 1 in 10,000
+// up to about 50,000 games.
+// Canonical forms take a millisecond or two, so a second filter of the much cheaper
+// Canonicalizer.invariant() keys answers first: a puzzle whose key was never recorded was
+// never played, in microseconds, and only the rest get the full check. It is kept from the
+// first game on; players with games recorded before it existed always get the full check.
+// Canonicalization and file access never run on the main thread: contains() is meant for
+// the generation thread, the filter is read on first use, and add() hands the work to a
+// background writer.
+public class PlayedPuzzles {
+    private static final String FILE_NAME = "played_puzzles.bloom";
+    private static final String INVARIANTS_FILE_NAME = "played_invariants.bloom";
+    private static final int BITS = 1 << 20;
+    private static final int PROBES = 10;
+
+    private static PlayedPuzzles instance;
+
+    private final File file;
+    private final File invariantsFile;
+    private BloomFilter filter; // Read on first use
+    private BloomFilter invariants; // Null if games were recorded without it
+    private final Canonicalizer canonicalizer = new Canonicalizer();
+    private final long[] fingerprint = new long[2];
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "PlayedPuzzles");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private PlayedPuzzles(File file, File invariantsFile) {
+        this.file = file;
+        this.invariantsFile = invariantsFile;
+    }
+
+    public static synchronized PlayedPuzzles getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlayedPuzzles(new File(context.getFilesDir(), FILE_NAME),
+                    new File(context.getFilesDir(), INVARIANTS_FILE_NAME));
+        }
+        return instance;
+    }
+
+    // Null if there is no readable filter in the file
+    private static BloomFilter load(File file) {
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return BloomFilter.readFrom(in);
+            } catch (IOException e) {
+                e.printStackTrace(); // Unreadable: start over rather than block new games
+            }
+        }
+        return null;
+    }
+
+    private BloomFilter filter() {
+        if (filter == null) {
+            filter = load(file);
+            if (filter == null) filter = new BloomFilter(BITS, PROBES);
+            // Without its file the invariants can only be trusted while nothing was recorded
+            invariants = load(invariantsFile);
+            if (invariants == null && filter.getCount() == 0) invariants = new BloomFilter(BITS, PROBES);
+        }
+        return filter;
+    }
+
+    // Whether this puzzle, or a disguised copy of it, was played before. Blocks while the
+    // filter is read or written, so not on the main thread.
+    public synchronized boolean contains(int[][] puzzle) {
+        BloomFilter filter = filter();
+        if (invariants != null) {
+            canonicalizer.invariant(puzzle, fingerprint);
+            if (!invariants.mightContain(fingerprint[0], fingerprint[1])) return false;
+        }
+        canonicalizer.fingerprint(puzzle, fingerprint);
+        return filter.mightContain(fingerprint[0], fingerprint[1]);
+    }
+
+    // Record a puzzle as played and save the filter, in the background. The clues are
+    // copied first, so the caller may reuse its board.
+    public void add(int[][] puzzle) {
+        final int[][] clues = new int[puzzle.length][];
+        for (int r = 0; r < puzzle.length; r++) clues[r] = puzzle[r].clone();
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                save(clues);
+            }
+        });
+    }
+
+    private synchronized void save(int[][] puzzle) {
+        BloomFilter filter = filter();
+        // Invariants first, so that the puzzle is covered even if its fingerprint is a false hit
+        if (invariants != null) {
+            canonicalizer.invariant(puzzle, fingerprint);
+            if (!invariants.mightContain(fingerprint[0], fingerprint[1])) {
+                invariants.add(fingerprint[0], fingerprint[1]);
+                if (!write(invariants, invariantsFile)) {
+                    // A stale file would miss this puzzle; go without rather than trust it
+                    invariantsFile.delete();
+                    invariants = null;
+                }
+            }
+        }
+        canonicalizer.fingerprint(puzzle, fingerprint);
+        if (filter.mightContain(fingerprint[0], fingerprint[1])) return;
+        filter.add(fingerprint[0], fingerprint[1]);
+        write(filter, file);
+    }
+
+    // Write a temporary file and rename it, so a crash never leaves half a filter. False if
+    // the file was left as it was.
+    private static boolean write(BloomFilter filter, File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            filter.writeTo(out);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (temp.renameTo(file)) return true;
+        temp.delete();
+        return false;
+    }
+
+    public synchronized int getCount() {
+        return filter().getCount();
+    }
+}
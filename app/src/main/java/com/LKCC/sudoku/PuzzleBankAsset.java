@@ -0,0 +1,38 @@
+package com.LKCC.sudoku;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import com.LKCC.sudoku.engine.PuzzleBank;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+// Opens the optional puzzle bank bundled as an asset. The asset is stored uncompressed
+// (see noCompress in build.gradle.kts), so it can be memory-mapped straight out of the APK
+// without copying or parsing it.
+public class PuzzleBankAsset {
+    public static final String ASSET_NAME = "puzzles.bank";
+
+    private static PuzzleBank bank;
+    private static boolean opened = false;
+
+    // The shared bank, or null if the app was built without one
+    public static synchronized PuzzleBank get(Context context) {
+        if (!opened) {
+            opened = true;
+            try {
+                AssetFileDescriptor descriptor = context.getAssets().openFd(ASSET_NAME);
+                // Closing the stream closes the descriptor; the mapping stays valid afterwards
+                try (FileInputStream stream = descriptor.createInputStream()) {
+                    bank = new PuzzleBank(stream.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                            descriptor.getStartOffset(), descriptor.getLength()));
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                bank = null; // Missing, compressed or unreadable asset: generate live instead
+            }
+        }
+        return bank;
+    }
+}
@@ -0,0 +1,135 @@
+package com.LKCC.sudoku;
+
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps a few ready-to-play puzzles per game mode so starting a game does not
+// have to wait for generation. Background workers top the pools up after every take.
+public class PuzzlePool {
+    public static final int DEFAULT_DEPTH = 3;
+    public static final int DEFAULT_THREADS = 1;
+
+    private static PuzzlePool instance;
+
+    private final int depth;
+    private final Map<MainActivity.GameMode, ArrayBlockingQueue<Puzzle>> pools = new EnumMap<>(MainActivity.GameMode.class);
+    private final Map<MainActivity.GameMode, AtomicInteger> pending = new EnumMap<>(MainActivity.GameMode.class);
+    private final ExecutorService executor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Each worker thread owns its generator, since generators are not thread safe
+    private final ThreadLocal<PuzzleGenerator> generators = new ThreadLocal<PuzzleGenerator>() {
+        @Override
+        protected PuzzleGenerator initialValue() {
+            return new PuzzleGenerator(SolverType.DLX, new Random());
+        }
+    };
+
+    public PuzzlePool(int depth, int threads) {
+        this.depth = Math.max(1, depth);
+        for (MainActivity.GameMode mode : MainActivity.GameMode.values()) {
+            pools.put(mode, new ArrayBlockingQueue<Puzzle>(this.depth));
+            pending.put(mode, new AtomicInteger());
+        }
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PuzzlePool-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY); // Stay out of the way of the UI thread
+                return thread;
+            }
+        });
+    }
+
+    // Shared pool used by the activities
+    public static synchronized PuzzlePool getInstance() {
+        if (instance == null) {
+            instance = new PuzzlePool(DEFAULT_DEPTH, DEFAULT_THREADS);
+        }
+        return instance;
+    }
+
+    // Replace the shared pool with one of a different depth / worker count
+    public static synchronized void configure(int depth, int threads) {
+        if (instance != null) {
+            instance.shutdown();
+        }
+        instance = new PuzzlePool(depth, threads);
+    }
+
+    // Take a ready puzzle for the mode, or null if the pool is empty.
+    // Either way a refill is scheduled in the background.
+    public Puzzle take(MainActivity.GameMode mode) {
+        Puzzle puzzle = pools.get(mode).poll();
+        if (puzzle != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        prefetch(mode);
+        return puzzle;
+    }
+
+    // Schedule generation until the mode's pool (plus work in flight) reaches the configured depth
+    public void prefetch(final MainActivity.GameMode mode) {
+        final ArrayBlockingQueue<Puzzle> pool = pools.get(mode);
+        final AtomicInteger inFlight = pending.get(mode);
+        while (true) {
+            int current = inFlight.get();
+            if (pool.size() + current >= depth) return;
+            if (!inFlight.compareAndSet(current, current + 1)) continue;
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            pool.offer(generators.get().generate(mode.getClues(),
+                                    mode.getEasiest(), mode.getHardest(), null, null));
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Executor was shut down; nothing more to schedule
+                inFlight.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getAvailable(MainActivity.GameMode mode) {
+        return pools.get(mode).size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,36 +1,177 @@
 package com.LKCC.sudoku;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.DashPathEffect;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.GestureDetector;
+import android.view.HapticFeedbackConstants;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 
+import com.LKCC.sudoku.engine.BoardState;
+import com.LKCC.sudoku.engine.CageLayout;
+import com.LKCC.sudoku.engine.CancellationToken;
+import com.LKCC.sudoku.engine.CandidateGrid;
+import com.LKCC.sudoku.engine.GenerationStats;
+import com.LKCC.sudoku.engine.GridShape;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleBank;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+import com.LKCC.sudoku.engine.SymmetryTransform;
+import com.LKCC.sudoku.engine.Technique;
+
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Random;
-import java.util.Collections;
-import java.util.ArrayList;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public class SudokuBoardView extends View {
-    private int[][] board = new int[9][9];
-    private int[][] initialBoard = new int[9][9];
-    private int[][] solution = new int[9][9];
-    private boolean[][][] pencilMarks = new boolean[9][9][10]; // [row][col][number] - index 0 unused, 1-9 for numbers
-    private int selectedRow = -1, selectedCol = -1;
-    private Paint linePaint, majorLinePaint, textPaint, selectedPaint, relatedPaint, wrongPaint, matchPaint, userInputPaint, pencilPaint, pauseOverlayPaint;
+    private static final char[] GLYPHS = new char[GridShape.TWENTY_FIVE.getSize() + 1]; // [digit] -> its symbol, drawn without a String
+
+    private static final long HUD_REFRESH_NANOS = 250_000_000;
+    private static final int MISTAKE_FLASH = Color.argb(110, 211, 47, 47); // wrongPaint's red, see-through
+    private static final int SELECTION_TRAIL = Color.argb(110, 255, 255, 0); // selectedPaint's yellow, see-through
+    private static final int PENCIL_ATLAS_COLUMNS = 23; // 23 x 23 tiles hold all 512 masks
+    private static final long PENCIL_ATLAS_MAX_BYTES = 8L << 20; // One byte per pixel; about 130 px square tiles
+    private static final int DIGIT_CLUE = 0; // Digit styles, see digitStyle
+    private static final int DIGIT_ENTERED = 1;
+    private static final int DIGIT_WRONG = 2;
+    private static final int DIGIT_MATCH = 3;
+
+    static {
+        for (int digit = 1; digit < GLYPHS.length; digit++) GLYPHS[digit] = GridShape.symbol(digit);
+    }
+
+    private GridShape shape = GridShape.CLASSIC; // What the generators make; a template for jigsaw
+    private GridShape layout = shape; // Units of the board: shape, or the current jigsaw layout
+    private int size = shape.getSize(); // Cells per row, column and box; also the highest digit
+    private int side = layout.getSide(); // Rows and columns of the board: size, or 21 on Samurai
+    private BoardState state = new BoardState(layout); // Board model; the fields below are its live arrays
+    private int[][] board = state.getBoard();
+    private int[][] initialBoard = state.getInitialBoard();
+    private int[][] solution = state.getSolution();
+    private boolean[][][] pencilMarks = state.getPencilMarks(); // [row][col][number] - index 0 unused, 1-size for numbers
+    private CandidateGrid grid = state.getGrid(); // Row/column/box masks kept in sync with board
+    private int selectedRow = -1, selectedCol = -1; // The anchor: peers, numbers and hints go by this cell
+    // Multi-cell selection, one bit per cell and the anchor included; empty when nothing is
+    // selected. A drag across cells or a long press grows it, and pencil marks and erasing
+    // then apply to every selected cell as one undoable edit.
+    private final BitSet selection = new BitSet();
+    private final BitSet selectionAtDown = new BitSet(); // selection when the current touch began
+    private int dragCell = -1; // Cell the current drag selection last added, -1 if not selecting
+    private Paint linePaint, majorLinePaint, textPaint, selectedPaint, relatedPaint, variantPaint, wrongPaint, matchPaint, userInputPaint, pencilPaint, pauseOverlayPaint;
+    private boolean[] inExtraUnit = new boolean[layout.getCellCount()]; // Cells on a diagonal or in a window
+    private boolean[] related = new boolean[layout.getCellCount()]; // Peers of the selected cell, refilled by onDraw
+    private CageLayout cages; // Killer cages of the current puzzle, null for other variants
+    private String[] cageSumLabels; // [cage] -> its sum as text
+    private Paint cagePaint, cageSumPaint;
+    private Path cagePath; // Dashed cage outlines, rebuilt when the cages or the cell size change
+    private int cagePathCellSize;
+    private Bitmap gridLayer; // Grid lines and cages at zoom 1, dropped when the layout or cages change
+    private int gridLayerCellSize;
+    private Bitmap pencilAtlas; // [mask] -> tile of its pencil marks, see buildPencilAtlas
+    private CellNodes cellNodes; // Display lists per cell on API 29+, null before the first frame there
+    private int cellNodesCellSize;
+    private Bitmap cellNodesAtlas; // Pencil atlas the cell nodes were recorded with, if any
+    private final CellNodes.Painter cellPainter = new CellNodes.Painter() {
+        @Override
+        public void paintCell(Canvas canvas, int row, int col, int cellSize, int layer) {
+            if (layer == CellNodes.BACKGROUND) {
+                drawCellBackground(canvas, row, col, cellSize);
+            } else {
+                drawCellForeground(canvas, row, col, cellSize);
+            }
+        }
+    };
+    private boolean multiSelect; // More than one cell selected, set by onDraw
+    private int selectedNumber; // Digit in the selected cell, -1 if none; set by onDraw
+    private final Rect pencilTile = new Rect(); // Tile bounds within a cell
+    private final Rect pencilSource = new Rect();
+    private final RectF pencilTarget = new RectF();
+    private int pencilAtlasCellSize;
+    private float pencilAtlasTextSize;
+    private CellEffects effects; // Placement, mistake and selection animations in the parent's overlay
+    private FrameStats frameStats; // Frame timing while the debug HUD is on, null otherwise
+    private long pendingInputNanos; // When the input the next frame shows arrived, 0 if none
+    private long touchNanos; // Event time of the touch being handled, on the System.nanoTime clock
+    private long lastVsyncNanos;
+    private Paint hudPaint, hudBackgroundPaint;
+    private String[] hudLines;
+    private long hudUpdatedNanos;
+    private final Choreographer.FrameCallback vsyncCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (frameStats == null) return;
+            if (lastVsyncNanos != 0) frameStats.recordInterval(frameTimeNanos - lastVsyncNanos);
+            lastVsyncNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+    // Boards larger than 9x9 zoom with a pinch and pan with a drag. zoom 1 fits the whole
+    // board; panX/panY is the zoomed board's pixel at the view's top-left corner.
+    private float zoom = 1f;
+    private float panX, panY;
+    private ScaleGestureDetector scaleDetector;
+    private GestureDetector gestureDetector;
+    private int firstRow, lastRow, firstCol, lastCol; // Cells in view, set by onDraw; last exclusive
+    private int markColumns = 3, markRows = 3; // Pencil marks are laid out in a markColumns x markRows block
     private Random random = new Random();
+    private SolverType solverType = SolverType.DLX;
+    private PuzzleGenerator generator = new PuzzleGenerator(shape, solverType, random);
+    private final Random asyncRandom = new Random(); // Only used on the generation thread
+    private PuzzleGenerator asyncGenerator = new PuzzleGenerator(shape, solverType, asyncRandom); // Only used on the generation thread
+    private GenerationStats lastGenerationStats;
+    private PuzzleBank puzzleBank; // Pre-generated puzzles tried before live generation, may be null
+    private final SymmetryTransform symmetry = new SymmetryTransform(); // Disguises each banked puzzle
+    private String puzzleId; // PuzzleId of the current puzzle, null if it cannot be regenerated
+
+    // Background generation: one shared worker thread, results delivered on the main thread
+    private static final ExecutorService generationExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "PuzzleGeneration");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private CancellationToken generationToken;
+    private boolean isGenerating = false; // Board shows a placeholder and ignores input while true
+    private volatile int generationProgress = 0;
+    private volatile int generationTotal = 0;
     private boolean highlightWrong = false;
     private boolean gameCompleted = false;
     private SudokuListener sudokuListener;
     private int clues = 30; // Default
+    private Technique easiest = Technique.NAKED_SINGLE; // Range of the hardest technique a generated puzzle may need
+    private Technique hardest = Technique.GUESSING;
     private boolean pencilMode = false; // Track if we're in pencil mode
     private boolean fastPencilMode = false; // Track if we're in fast pencil mode
     private boolean isPaused = false; // Track if game is paused
 
     // Move history for undo functionality
     private Stack<MoveHistory> moveHistory = new Stack<>();
+    private boolean batching; // A multi-cell edit or undo is running, see beginBatch
+    private int batchChangedDigits;
 
     // Inner class to store move history
     private static class MoveHistory {
@@ -38,21 +179,56 @@ public class SudokuBoardView extends View {
         int previousValue;
         boolean[] previousPencilMarks; // Store pencil marks for this cell (1D array)
 
+        MoveHistory[] batch; // Cells of a multi-cell edit, undone together; null for one cell
+        boolean peer; // In a batch: not edited itself, only recorded for the marks the edit changed
+
         MoveHistory(int row, int col, int previousValue, boolean[] pencilMarksForCell) {
             this.row = row;
             this.col = col;
             this.previousValue = previousValue;
-            this.previousPencilMarks = new boolean[10];
-            System.arraycopy(pencilMarksForCell, 0, this.previousPencilMarks, 0, 10);
+            this.previousPencilMarks = pencilMarksForCell.clone();
+        }
+
+        // row/col is the first edited cell, which undo selects
+        MoveHistory(MoveHistory[] batch) {
+            int first = 0;
+            while (batch[first].peer) first++;
+            this.row = batch[first].row;
+            this.col = batch[first].col;
+            this.batch = batch;
         }
     }
 
+    // Result of generateNewPuzzleAsync, always called on the main thread
+    public interface GenerationCallback {
+        void onPuzzleReady(Puzzle puzzle);
+        void onGenerationFailed(Exception error); // Not called when generation was cancelled
+    }
+
+    // Asked on the generation thread whether a candidate puzzle may be started, e.g. to skip
+    // puzzles the player has seen before
+    public interface PuzzleFilter {
+        boolean accept(int[][] clues);
+    }
+
+    // Ready-made puzzles tried on the generation thread before the bank and live
+    // generation, e.g. PuzzlePool; next() returns null when there are none
+    public interface PuzzleSource {
+        Puzzle next();
+    }
+
     public interface SudokuListener {
         void onGameCompleted();
         void onCorrectBoxClick();
         void onMistake();
         void onNoCellSelected(); // Added for no cell selected feedback
         void onBoardChanged(); // Add this method for updating number counts
+        // One cell's value changed by a move, hint or undo; changedDigits is the
+        // CandidateGrid.bit mask of the digits whose remaining count moved (at most one)
+        void onCellChanged(int row, int col, int oldValue, int newValue, int changedDigits);
+        // A multi-cell edit or its undo changed several cells at once, reported instead of one
+        // onCellChanged per cell; changedDigits is the union of theirs
+        void onCellsChanged(int changedDigits);
     }
 
     public void setSudokuListener(SudokuListener listener) {
@@ -61,14 +237,19 @@ public class SudokuBoardView extends View {
 
     // Override setNumber to prevent actions when paused
     public void setNumber(int number) {
-        if (isPaused) return; // Prevent action when paused
+        if (isPaused || isGenerating) return; // Prevent action when paused or still generating
 
+        if (pencilMode && selection.cardinality() > 1 && !gameCompleted) {
+            togglePencilMarkInSelection(number);
+            return;
+        }
         if (selectedRow != -1 && selectedCol != -1 && !gameCompleted) {
             // Check if the cell is not a clue (initial cell)
             if (initialBoard[selectedRow][selectedCol] != 0) {
                 // This is a clue cell, can't be modified
                 return;
             }
+            long inputNanos = System.nanoTime();
 
             if (pencilMode) {
                 // In pencil mode, save the state before toggling pencil mark
@@ -79,6 +260,7 @@ public class SudokuBoardView extends View {
                 if (isNumberAllowed(selectedRow, selectedCol, number)) {
                     // Toggle pencil mark
                     pencilMarks[selectedRow][selectedCol][number] = !pencilMarks[selectedRow][selectedCol][number];
+                    markInput(inputNanos);
                     invalidate();
                 }
                 // No mistakes counted in pencil mode
@@ -90,12 +272,10 @@ public class SudokuBoardView extends View {
             moveHistory.push(move);
 
             // Clear pencil marks when placing a number
-            for (int n = 1; n <= 9; n++) {
-                pencilMarks[selectedRow][selectedCol][n] = false;
-            }
+            state.clearPencilMarks(selectedRow, selectedCol);
 
             // Always place the number on the board
-            board[selectedRow][selectedCol] = number;
+            placeCell(selectedRow, selectedCol, number);
 
             // If fast pencil mode is enabled, update all related pencil marks
             if (fastPencilMode) {
@@ -104,10 +284,18 @@ public class SudokuBoardView extends View {
 
             // Check if it's correct for scoring/feedback
             if (solution[selectedRow][selectedCol] == number) {
+                if (isCellOnScreen(selectedRow, selectedCol)) {
+                    float cell = zoomedCellSize();
+                    effects.pop(selectedCol * cell - panX, selectedRow * cell - panY, cell, GLYPHS[number], userInputPaint, zoom);
+                }
                 if (sudokuListener != null) {
                     sudokuListener.onCorrectBoxClick();
                 }
             } else {
+                if (isCellOnScreen(selectedRow, selectedCol)) {
+                    float cell = zoomedCellSize();
+                    effects.flash(selectedCol * cell - panX, selectedRow * cell - panY, cell, MISTAKE_FLASH);
+                }
                 if (sudokuListener != null) {
                     sudokuListener.onMistake();
                 }
@@ -118,6 +306,7 @@ public class SudokuBoardView extends View {
                 sudokuListener.onBoardChanged();
             }
 
+            markInput(inputNanos);
             invalidate();
             if (isBoardCompleteAndCorrect()) {
                 gameCompleted = true;
@@ -137,9 +326,104 @@ public class SudokuBoardView extends View {
         this.clues = clues;
     }
 
+    // Only generate puzzles whose hardest required technique lies in this range
+    public void setTechniqueRange(Technique easiest, Technique hardest) {
+        this.easiest = easiest;
+        this.hardest = hardest;
+    }
+
+    // Choose the engine used for puzzle generation (DLX by default)
+    public void setSolverType(SolverType type) {
+        if (type != solverType) {
+            solverType = type;
+            generator = new PuzzleGenerator(shape, type, random);
+            asyncGenerator = new PuzzleGenerator(shape, type, asyncRandom);
+        }
+    }
+
+    // Switch to another grid shape (9x9 by default), for jigsaw the template from
+    // GridShape.of. The board is emptied; start a new puzzle or load a game of that shape
+    // afterwards.
+    public void setShape(GridShape shape) {
+        if (shape == this.shape) return;
+        cancelPuzzleGeneration();
+        this.shape = shape;
+        generator = new PuzzleGenerator(shape, solverType, random);
+        asyncGenerator = new PuzzleGenerator(shape, solverType, asyncRandom);
+        useLayout(shape);
+    }
+
+    // Empty board on the given units
+    private void useLayout(GridShape layout) {
+        this.layout = layout;
+        size = layout.getSize();
+        side = layout.getSide();
+        state = new BoardState(layout);
+        board = state.getBoard();
+        initialBoard = state.getInitialBoard();
+        solution = state.getSolution();
+        pencilMarks = state.getPencilMarks();
+        grid = state.getGrid();
+        setCages(null);
+        inExtraUnit = new boolean[layout.getCellCount()];
+        related = new boolean[layout.getCellCount()];
+        for (int unit = layout.getUnitCount() - layout.getExtraUnitCount(); unit < layout.getUnitCount(); unit++) {
+            for (int cell : layout.getUnitCells(unit)) inExtraUnit[cell] = true;
+        }
+        clearSelection();
+        gameCompleted = false;
+        clearMoveHistory();
+        zoom = 1f;
+        panX = 0;
+        panY = 0;
+        scalePaints();
+        buildPencilAtlas();
+        releaseCellNodes();
+        cellNodes = null; // Sized for the old layout
+        invalidate();
+    }
+
+    // Switch to the layout of a puzzle or saved game, and to its shape if that differs
+    private void showLayout(GridShape layout) {
+        if (layout == this.layout) return;
+        setShape(layout.hasRegularBoxes() ? layout : GridShape.of(layout.getSize(), layout.getVariant()));
+        if (layout != this.layout) useLayout(layout);
+    }
+
+    public GridShape getShape() {
+        return shape;
+    }
+
+    // The units actually on the board; differs from getShape() only for jigsaw regions
+    public GridShape getLayout() {
+        return layout;
+    }
+
+    // Killer cages of the current puzzle, null for other variants
+    public CageLayout getCages() {
+        return cages;
+    }
+
+    private void setCages(CageLayout cages) {
+        this.cages = cages;
+        cagePath = null;
+        releaseGridLayer();
+        cageSumLabels = null;
+        if (cages != null) {
+            cageSumLabels = new String[cages.getCageCount()];
+            for (int cage = 0; cage < cageSumLabels.length; cage++) cageSumLabels[cage] = String.valueOf(cages.getSum(cage));
+        }
+    }
+
+    public SolverType getSolverType() {
+        return solverType;
+    }
+
     public SudokuBoardView(Context context, AttributeSet attrs) {
         super(context, attrs);
         init();
+        initGestures(context);
+        effects = new CellEffects(this, context);
         // Do not generate puzzle here
     }
 
@@ -162,6 +446,8 @@ public class SudokuBoardView extends View {
         selectedPaint.setColor(Color.YELLOW);
         relatedPaint = new Paint();
         relatedPaint.setColor(Color.LTGRAY);
+        variantPaint = new Paint();
+        variantPaint.setColor(Color.parseColor("#E3F2FD")); // Light blue under diagonals and windows
         wrongPaint = new Paint();
         wrongPaint.setColor(Color.parseColor("#D32F2F")); // Darker, more visible red
         wrongPaint.setTextSize(64);
@@ -180,253 +466,713 @@ public class SudokuBoardView extends View {
         pencilPaint.setTextSize(32);
         pencilPaint.setTextAlign(Paint.Align.CENTER);
 
+        // Killer cages: dashed outlines inside the cell borders, sums in the top-left corner
+        cagePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        cagePaint.setColor(Color.DKGRAY);
+        cagePaint.setStyle(Paint.Style.STROKE);
+        cagePaint.setStrokeWidth(2);
+        cagePaint.setPathEffect(new DashPathEffect(new float[] {8, 6}, 0));
+        cageSumPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        cageSumPaint.setColor(Color.DKGRAY);
+        cageSumPaint.setTextSize(22);
+        cageSumPaint.setTextAlign(Paint.Align.LEFT);
+
         // Pause overlay paint
         pauseOverlayPaint = new Paint();
         pauseOverlayPaint.setColor(Color.argb(150, 0, 0, 0)); // Semi-transparent black
+
+        // Frame timing HUD: white monospace lines on a dark band
+        hudPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        hudPaint.setColor(Color.WHITE);
+        hudPaint.setTextSize(26);
+        hudPaint.setTypeface(android.graphics.Typeface.MONOSPACE);
+        hudBackgroundPaint = new Paint();
+        hudBackgroundPaint.setColor(Color.argb(180, 0, 0, 0));
+    }
+
+    // Text sizes above are for 9x9; other shapes scale them with the cell size
+    private void scalePaints() {
+        float scale = 9f / side;
+        textPaint.setTextSize(64 * scale);
+        wrongPaint.setTextSize(64 * scale);
+        matchPaint.setTextSize(64 * scale);
+        userInputPaint.setTextSize(64 * scale);
+
+        markColumns = (int) Math.ceil(Math.sqrt(size));
+        markRows = (size + markColumns - 1) / markColumns;
+        pencilPaint.setTextSize(32 * scale * 3f / markColumns);
     }
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        long start = frameStats != null ? System.nanoTime() : 0;
+        int cellSize = Math.min(getWidth(), getHeight()) / side;
+        // Caches that follow the puzzle or the cell size are rebuilt here; nothing after may
+        // allocate, which BoardDrawAllocationTest checks
+        if (cages != null && (cagePath == null || cagePathCellSize != cellSize)) {
+            cagePath = buildCagePath(cellSize);
+            cagePathCellSize = cellSize;
+        }
+        if (zoom == 1f && cellSize > 0 && (gridLayer == null || gridLayerCellSize != cellSize)) {
+            buildGridLayer(cellSize);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && canvas.isHardwareAccelerated()) {
+            Bitmap atlas = zoom == 1f ? pencilAtlas : null;
+            if (cellNodes == null) {
+                cellNodes = new CellNodes(layout.getCellCount());
+            } else if (cellNodesCellSize != cellSize || cellNodesAtlas != atlas) {
+                cellNodes.reset();
+            }
+            cellNodesCellSize = cellSize;
+            cellNodesAtlas = atlas;
+        }
+        drawBoard(canvas, cellSize);
+        if (frameStats != null) {
+            long end = System.nanoTime();
+            frameStats.recordDraw(end - start);
+            if (pendingInputNanos != 0) {
+                frameStats.recordInput(end - pendingInputNanos);
+                pendingInputNanos = 0;
+            }
+            drawHud(canvas);
+        }
+    }
+
+    // Debug HUD over the top of the board. Unlike the board it allocates, so it only runs
+    // while the HUD is on, and refreshes its text at most every HUD_REFRESH_NANOS.
+    private void drawHud(Canvas canvas) {
+        long now = System.nanoTime();
+        if (hudLines == null || now - hudUpdatedNanos > HUD_REFRESH_NANOS) {
+            hudLines = frameStats.report().split("\n");
+            hudUpdatedNanos = now;
+        }
+        float lineHeight = hudPaint.getTextSize() * 1.2f;
+        canvas.drawRect(0, 0, getWidth(), lineHeight * (hudLines.length + 0.5f), hudBackgroundPaint);
+        for (int i = 0; i < hudLines.length; i++) {
+            canvas.drawText(hudLines[i], lineHeight / 2, lineHeight * (i + 1), hudPaint);
+        }
+    }
+
+    // Frame timing for the debug HUD: onDraw and input latencies, and Choreographer frame
+    // intervals while enabled. Off by default; turning it off drops the numbers.
+    public void setFrameStatsEnabled(boolean enabled) {
+        if (enabled == (frameStats != null)) return;
+        if (enabled) {
+            frameStats = new FrameStats();
+            lastVsyncNanos = 0;
+            Choreographer.getInstance().postFrameCallback(vsyncCallback);
+        } else {
+            Choreographer.getInstance().removeFrameCallback(vsyncCallback);
+            frameStats = null;
+            hudLines = null;
+            pendingInputNanos = 0;
+        }
+        invalidate();
+    }
+
+    // Null unless enabled
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
+    // Start an input-to-frame measurement; the first input since the last frame counts
+    private void markInput(long nanos) {
+        if (frameStats != null && pendingInputNanos == 0) pendingInputNanos = nanos;
+    }
+
+    // Everything a frame draws, from per-view state only: a tap redraws the whole board,
+    // so garbage here would mean a collection every few taps
+    private void drawBoard(Canvas canvas, int cellSize) {
         int width = getWidth();
         int height = getHeight();
-        int cellSize = Math.min(width, height) / 9;
-        // Highlight related cells in grey
-        boolean[][] related = new boolean[9][9];
-        int selectedNumber = -1;
+        // Only the cells in view are drawn, one more on each side for lines shared with them
+        float zoomedCell = cellSize * zoom;
+        firstRow = Math.max(0, (int) (panY / zoomedCell) - 1);
+        lastRow = Math.min(side, (int) ((panY + height) / zoomedCell) + 2);
+        firstCol = Math.max(0, (int) (panX / zoomedCell) - 1);
+        lastCol = Math.min(side, (int) ((panX + width) / zoomedCell) + 2);
+        canvas.save();
+        canvas.translate(-panX, -panY);
+        canvas.scale(zoom, zoom);
+        if (isGenerating) {
+            drawGenerationPlaceholder(canvas, cellSize);
+            canvas.restore();
+            return;
+        }
+        // Peers of the selected cell are highlighted if it holds a digit: every cell sharing
+        // a unit with it, row, column, box and the variant's extras
+        Arrays.fill(related, false);
+        selectedNumber = -1;
         if (selectedRow != -1 && selectedCol != -1 && board[selectedRow][selectedCol] != 0) {
             selectedNumber = board[selectedRow][selectedCol];
-            // Highlight row
-            for (int c = 0; c < 9; c++) related[selectedRow][c] = true;
-            // Highlight column
-            for (int r = 0; r < 9; r++) related[r][selectedCol] = true;
-            // Highlight 3x3 box
-            int boxRow = (selectedRow / 3) * 3;
-            int boxCol = (selectedCol / 3) * 3;
-            for (int r = boxRow; r < boxRow + 3; r++)
-                for (int c = boxCol; c < boxCol + 3; c++) related[r][c] = true;
-            // Draw grey highlight
-            for (int r = 0; r < 9; r++) {
-                for (int c = 0; c < 9; c++) {
-                    if (related[r][c]) {
-                        canvas.drawRect(c * cellSize, r * cellSize,
-                            (c + 1) * cellSize, (r + 1) * cellSize, relatedPaint);
-                    }
+            related[selectedRow * side + selectedCol] = true;
+            for (int peer : layout.getPeers(selectedRow * side + selectedCol)) related[peer] = true;
+        }
+        multiSelect = selection.cardinality() > 1;
+        // Each cell in two layers around the grid lines, through its display lists on API 29+
+        // hardware canvases
+        boolean nodes = cellNodes != null && canvas.isHardwareAccelerated();
+        for (int r = firstRow; r < lastRow; r++) {
+            for (int c = firstCol; c < lastCol; c++) {
+                if (nodes) {
+                    cellNodes.draw(canvas, CellNodes.BACKGROUND, r, c, side, cellSize, backgroundKey(r, c), cellPainter);
+                } else {
+                    drawCellBackground(canvas, r, c, cellSize);
                 }
             }
         }
-        // Highlight selected cell FIRST
-        if (selectedRow != -1 && selectedCol != -1) {
-            canvas.drawRect(selectedCol * cellSize, selectedRow * cellSize,
-                    (selectedCol + 1) * cellSize, (selectedRow + 1) * cellSize, selectedPaint);
+        if (zoom == 1f && gridLayer != null) {
+            canvas.drawBitmap(gridLayer, 0, 0, null);
+        } else {
+            drawGridLines(canvas, cellSize);
+            if (cages != null) drawCages(canvas, cellSize);
         }
-        // Draw grid lines
-        // First draw all minor grid lines (thin lines for individual cells)
-        for (int i = 0; i <= 9; i++) {
-            // Skip lines that will be drawn as major lines
-            if (i % 3 != 0) {
-                canvas.drawLine(i * cellSize, 0, i * cellSize, cellSize * 9, linePaint);
-                canvas.drawLine(0, i * cellSize, cellSize * 9, i * cellSize, linePaint);
-            }
-        }
-
-        // Then draw major grid lines (thick lines for 3x3 section boundaries)
-        for (int i = 0; i <= 9; i += 3) {
-            canvas.drawLine(i * cellSize, 0, i * cellSize, cellSize * 9, majorLinePaint);
-            canvas.drawLine(0, i * cellSize, cellSize * 9, i * cellSize, majorLinePaint);
-        }
-        // Draw numbers and pencil marks
-        for (int r = 0; r < 9; r++) {
-            for (int c = 0; c < 9; c++) {
-                if (board[r][c] != 0) {
-                    float x = c * cellSize + cellSize / 2f;
-                    float y = r * cellSize + cellSize / 1.5f;
-
-                    // Check if this is a user-input number (not an initial clue)
-                    boolean isUserInput = (initialBoard[r][c] == 0);
-
-                    if (related[r][c] && board[r][c] == selectedNumber && !(r == selectedRow && c == selectedCol)) {
-                        canvas.drawText(String.valueOf(board[r][c]), x, y, matchPaint);
-                    } else if (board[r][c] != solution[r][c]) {
-                        canvas.drawText(String.valueOf(board[r][c]), x, y, wrongPaint);
-                    } else if (isUserInput) {
-                        canvas.drawText(String.valueOf(board[r][c]), x, y, userInputPaint);
-                    } else {
-                        canvas.drawText(String.valueOf(board[r][c]), x, y, textPaint);
-                    }
-                }
-
-                // Draw pencil marks only if cell is empty
-                if (board[r][c] == 0) {
-                    for (int n = 1; n <= 9; n++) {
-                        if (pencilMarks[r][c][n]) {
-                            float x, y;
-                            // Position pencil marks according to specification:
-                            // 1 = upper left, 2 = upper middle, 3 = upper right
-                            // 4 = middle left, 5 = center, 6 = middle right
-                            // 7 = lower left, 8 = lower middle, 9 = lower right
-                            switch (n) {
-                                case 1: // upper left
-                                    x = c * cellSize + cellSize * 0.2f;
-                                    y = r * cellSize + cellSize * 0.3f;
-                                    break;
-                                case 2: // upper middle
-                                    x = c * cellSize + cellSize * 0.5f;
-                                    y = r * cellSize + cellSize * 0.3f;
-                                    break;
-                                case 3: // upper right
-                                    x = c * cellSize + cellSize * 0.8f;
-                                    y = r * cellSize + cellSize * 0.3f;
-                                    break;
-                                case 4: // middle left
-                                    x = c * cellSize + cellSize * 0.2f;
-                                    y = r * cellSize + cellSize * 0.5f;
-                                    break;
-                                case 5: // center
-                                    x = c * cellSize + cellSize * 0.5f;
-                                    y = r * cellSize + cellSize * 0.5f;
-                                    break;
-                                case 6: // middle right
-                                    x = c * cellSize + cellSize * 0.8f;
-                                    y = r * cellSize + cellSize * 0.5f;
-                                    break;
-                                case 7: // lower left
-                                    x = c * cellSize + cellSize * 0.2f;
-                                    y = r * cellSize + cellSize * 0.8f;
-                                    break;
-                                case 8: // lower middle
-                                    x = c * cellSize + cellSize * 0.5f;
-                                    y = r * cellSize + cellSize * 0.8f;
-                                    break;
-                                case 9: // lower right
-                                    x = c * cellSize + cellSize * 0.8f;
-                                    y = r * cellSize + cellSize * 0.8f;
-                                    break;
-                                default:
-                                    x = c * cellSize + cellSize / 2f;
-                                    y = r * cellSize + cellSize / 2f;
-                                    break;
-                            }
-                            canvas.drawText(String.valueOf(n), x, y, pencilPaint);
-                        }
-                    }
+        for (int r = firstRow; r < lastRow; r++) {
+            for (int c = firstCol; c < lastCol; c++) {
+                if (nodes) {
+                    cellNodes.draw(canvas, CellNodes.FOREGROUND, r, c, side, cellSize, foregroundKey(r, c), cellPainter);
+                } else {
+                    drawCellForeground(canvas, r, c, cellSize);
                 }
             }
         }
 
+        canvas.restore();
+
         // Draw pause overlay if the game is paused
         if (isPaused) {
             canvas.drawRect(0, 0, width, height, pauseOverlayPaint);
         }
     }
 
-    @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        // Prevent interaction when game is paused
-        if (isPaused) {
-            return true;
+    // Variant tint, peer highlight and selection of one cell
+    private void drawCellBackground(Canvas canvas, int r, int c, int cellSize) {
+        int cell = r * side + c;
+        if (inExtraUnit[cell]) {
+            canvas.drawRect(c * cellSize, r * cellSize, (c + 1) * cellSize, (r + 1) * cellSize, variantPaint);
         }
+        if (related[cell]) {
+            canvas.drawRect(c * cellSize, r * cellSize, (c + 1) * cellSize, (r + 1) * cellSize, relatedPaint);
+        }
+        if (isSelected(r, c)) {
+            canvas.drawRect(c * cellSize, r * cellSize, (c + 1) * cellSize, (r + 1) * cellSize, selectedPaint);
+        }
+    }
 
-        if (event.getAction() == MotionEvent.ACTION_DOWN) {
-            int cellSize = Math.min(getWidth(), getHeight()) / 9;
-            int col = (int) (event.getX() / cellSize);
-            int row = (int) (event.getY() / cellSize);
-            if (row >= 0 && row < 9 && col >= 0 && col < 9) {
-                selectedRow = row;
-                selectedCol = col;
-                invalidate();
+    private boolean isSelected(int r, int c) {
+        return multiSelect ? selection.get(r * side + c) : r == selectedRow && c == selectedCol;
+    }
+
+    // A cell's digit, or its pencil marks if it is empty
+    private void drawCellForeground(Canvas canvas, int r, int c, int cellSize) {
+        if (board[r][c] != 0) {
+            canvas.drawText(GLYPHS, board[r][c], 1, c * cellSize + cellSize / 2f, r * cellSize + cellSize / 1.5f,
+                    digitPaint(digitStyle(r, c)));
+        } else if (pencilAtlas != null && zoom == 1f) {
+            // One blit of the tile for this cell's set of marks
+            int mask = pencilMask(r, c);
+            if (mask != 0) {
+                int tileLeft = (mask % PENCIL_ATLAS_COLUMNS) * pencilTile.width();
+                int tileTop = (mask / PENCIL_ATLAS_COLUMNS) * pencilTile.height();
+                pencilSource.set(tileLeft, tileTop, tileLeft + pencilTile.width(), tileTop + pencilTile.height());
+                pencilTarget.set(c * cellSize + pencilTile.left, r * cellSize + pencilTile.top,
+                        c * cellSize + pencilTile.right, r * cellSize + pencilTile.bottom);
+                canvas.drawBitmap(pencilAtlas, pencilSource, pencilTarget, pencilPaint);
+            }
+        } else {
+            for (int n = 1; n <= size; n++) {
+                if (pencilMarks[r][c][n]) {
+                    canvas.drawText(GLYPHS, n, 1, c * cellSize + markX(n, cellSize), r * cellSize + markY(n, cellSize), pencilPaint);
+                }
             }
         }
-        return true;
     }
 
-    // Remove numbers from the solution to create a playable puzzle
-    private void removeNumbers(int[][] board, int clues) {
-        // Create a list of all cell positions
-        ArrayList<int[]> cells = new ArrayList<>();
-        for (int r = 0; r < 9; r++) {
-            for (int c = 0; c < 9; c++) {
-                cells.add(new int[]{r, c});
-            }
-        }
-        Collections.shuffle(cells, random);
-        int cellsToRemove = 81 - clues;
-        for (int i = 0; i < cellsToRemove; i++) {
-            int[] pos = cells.get(i);
-            board[pos[0]][pos[1]] = 0;
-        }
-    }
-
-    // Backtracking Sudoku solver to fill the board with a valid solution
-    private boolean fillBoard(int[][] board) {
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                if (board[row][col] == 0) {
-                    ArrayList<Integer> numbers = new ArrayList<>();
-                    for (int n = 1; n <= 9; n++) numbers.add(n);
-                    Collections.shuffle(numbers, random);
-                    for (int number : numbers) {
-                        if (isSafe(board, row, col, number)) {
-                            board[row][col] = number;
-                            if (fillBoard(board)) return true;
-                            board[row][col] = 0;
-                        }
+    // How a filled cell's digit is drawn: same digit as the selected cell's, wrong, entered
+    // by the player, or a clue
+    private int digitStyle(int r, int c) {
+        if (related[r * side + c] && board[r][c] == selectedNumber && !(r == selectedRow && c == selectedCol)) {
+            return DIGIT_MATCH;
+        }
+        if (board[r][c] != solution[r][c]) return DIGIT_WRONG;
+        return initialBoard[r][c] == 0 ? DIGIT_ENTERED : DIGIT_CLUE;
+    }
+
+    private Paint digitPaint(int style) {
+        switch (style) {
+            case DIGIT_MATCH:
+                return matchPaint;
+            case DIGIT_WRONG:
+                return wrongPaint;
+            case DIGIT_ENTERED:
+                return userInputPaint;
+            default:
+                return textPaint;
+        }
+    }
+
+    private int pencilMask(int r, int c) {
+        int mask = 0;
+        for (int n = 1; n <= size; n++) {
+            if (pencilMarks[r][c][n]) mask |= CandidateGrid.bit(n);
+        }
+        return mask;
+    }
+
+    // What drawCellBackground draws for a cell, as a CellNodes key
+    private long backgroundKey(int r, int c) {
+        int cell = r * side + c;
+        return (inExtraUnit[cell] ? 1 : 0) | (related[cell] ? 2 : 0) | (isSelected(r, c) ? 4 : 0);
+    }
+
+    // What drawCellForeground draws: the digit and its style, or the pencil marks
+    private long foregroundKey(int r, int c) {
+        if (board[r][c] != 0) return board[r][c] | (digitStyle(r, c) + 1) << 5;
+        return (long) pencilMask(r, c) << 7;
+    }
+
+    // Grid lines and cage outlines stay the same for a whole game, so they are drawn once
+    // into a bitmap that every frame copies in a single call. Zoomed boards draw them
+    // directly instead, since a scaled bitmap would blur.
+    private void buildGridLayer(int cellSize) {
+        releaseGridLayer();
+        int extent = cellSize * side + (int) Math.ceil(majorLinePaint.getStrokeWidth());
+        gridLayer = Bitmap.createBitmap(extent, extent, Bitmap.Config.ARGB_8888);
+        gridLayerCellSize = cellSize;
+        Canvas layerCanvas = new Canvas(gridLayer);
+        firstRow = 0; // The whole board; onDraw sets the range again for every frame
+        lastRow = side;
+        firstCol = 0;
+        lastCol = side;
+        drawGridLines(layerCanvas, cellSize);
+        if (cages != null) drawCages(layerCanvas, cellSize);
+    }
+
+    private void releaseCellNodes() {
+        if (cellNodes != null) cellNodes.release();
+    }
+
+    private void releaseGridLayer() {
+        if (gridLayer != null) {
+            gridLayer.recycle();
+            gridLayer = null;
+        }
+    }
+
+    // Numbers fill the pencil mark block left to right, top to bottom; on 9x9 1 is upper
+    // left, 5 the center and 9 lower right. Offsets are from the cell's top-left corner.
+    private float markX(int number, int cellSize) {
+        int markCol = (number - 1) % markColumns;
+        return cellSize * (0.2f + 0.6f * markCol / (markColumns - 1));
+    }
+
+    private float markY(int number, int cellSize) {
+        int markRow = (number - 1) / markColumns;
+        return cellSize * (0.3f + 0.5f * markRow / Math.max(1, markRows - 1));
+    }
+
+    // Every set of 9x9 pencil marks rasterized once into an alpha-only atlas, one tile per
+    // 9-bit candidate mask, so a cell draws its marks with a single blit in pencilPaint's
+    // colour. Tiles are cropped to the mark block and laid out 23 x 23 to stay inside the
+    // usual 4096 px texture limit. Larger boards, zoomed boards and cells so big the atlas
+    // would pass PENCIL_ATLAS_MAX_BYTES draw the marks as text instead.
+    private void buildPencilAtlas() {
+        int cellSize = Math.min(getWidth(), getHeight()) / side;
+        if (size != CandidateGrid.SIZE || cellSize <= 0) {
+            releasePencilAtlas();
+            return;
+        }
+        if (pencilAtlas != null && cellSize == pencilAtlasCellSize && pencilPaint.getTextSize() == pencilAtlasTextSize) return;
+        releasePencilAtlas();
+
+        float halfWidth = 0;
+        for (int n = 1; n <= size; n++) halfWidth = Math.max(halfWidth, pencilPaint.measureText(String.valueOf(GLYPHS[n])) / 2);
+        int left = Math.max(0, (int) Math.floor(markX(1, cellSize) - halfWidth));
+        int top = Math.max(0, (int) Math.floor(markY(1, cellSize) + pencilPaint.ascent()));
+        int right = Math.min(cellSize, (int) Math.ceil(markX(size, cellSize) + halfWidth));
+        int bottom = Math.min(cellSize, (int) Math.ceil(markY(size, cellSize) + pencilPaint.descent()));
+        int tileWidth = right - left;
+        int tileHeight = bottom - top;
+        int masks = 1 << size;
+        int atlasRows = (masks + PENCIL_ATLAS_COLUMNS - 1) / PENCIL_ATLAS_COLUMNS;
+        if (tileWidth <= 0 || tileHeight <= 0 || (long) tileWidth * tileHeight * masks > PENCIL_ATLAS_MAX_BYTES) return;
+
+        pencilAtlas = Bitmap.createBitmap(PENCIL_ATLAS_COLUMNS * tileWidth, atlasRows * tileHeight, Bitmap.Config.ALPHA_8);
+        pencilTile.set(left, top, right, bottom);
+        pencilAtlasCellSize = cellSize;
+        pencilAtlasTextSize = pencilPaint.getTextSize();
+        Canvas atlasCanvas = new Canvas(pencilAtlas);
+        Paint markPaint = new Paint(pencilPaint);
+        markPaint.setAntiAlias(true);
+        for (int mask = 1; mask < masks; mask++) {
+            float x = (mask % PENCIL_ATLAS_COLUMNS) * tileWidth - left;
+            float y = (mask / PENCIL_ATLAS_COLUMNS) * tileHeight - top;
+            for (int bits = mask; bits != 0; bits &= bits - 1) {
+                int n = CandidateGrid.lowestDigit(bits);
+                atlasCanvas.drawText(GLYPHS, n, 1, x + markX(n, cellSize), y + markY(n, cellSize), markPaint);
+            }
+        }
+    }
+
+    private void releasePencilAtlas() {
+        if (pencilAtlas != null) {
+            pencilAtlas.recycle();
+            pencilAtlas = null;
+        }
+    }
+
+    private void drawGridLines(Canvas canvas, int cellSize) {
+        if (!layout.hasRegularBoxes() || layout.hasInactiveCells()) {
+            drawRegionLines(canvas, cellSize);
+            return;
+        }
+        int boxRows = layout.getBoxRows();
+        int boxCols = layout.getBoxCols();
+        // First draw all minor grid lines (thin lines for individual cells)
+        for (int i = 0; i <= side; i++) {
+            // Skip lines that will be drawn as major lines
+            if (i % boxCols != 0) {
+                canvas.drawLine(i * cellSize, 0, i * cellSize, cellSize * side, linePaint);
+            }
+            if (i % boxRows != 0) {
+                canvas.drawLine(0, i * cellSize, cellSize * side, i * cellSize, linePaint);
+            }
+        }
+
+        // Then draw major grid lines (thick lines for box boundaries)
+        for (int i = 0; i <= side; i += boxCols) {
+            canvas.drawLine(i * cellSize, 0, i * cellSize, cellSize * side, majorLinePaint);
+        }
+        for (int i = 0; i <= side; i += boxRows) {
+            canvas.drawLine(0, i * cellSize, cellSize * side, i * cellSize, majorLinePaint);
+        }
+    }
+
+    // Jigsaw and Samurai: cell by cell over the cells in view, thin lines between cells of
+    // the same region, thick ones along region edges and around the grids
+    private void drawRegionLines(Canvas canvas, int cellSize) {
+        for (int r = firstRow; r < lastRow; r++) {
+            for (int c = firstCol; c < lastCol; c++) {
+                int region = layout.boxIndex(r, c);
+                if (region < 0) continue; // Not part of the puzzle
+                float left = c * cellSize;
+                float top = r * cellSize;
+                float right = left + cellSize;
+                float bottom = top + cellSize;
+                // Right and bottom edges; an active neighbour draws the shared left and top ones
+                int next = c + 1 < side ? layout.boxIndex(r, c + 1) : -1;
+                canvas.drawLine(right, top, right, bottom, next == region ? linePaint : majorLinePaint);
+                next = r + 1 < side ? layout.boxIndex(r + 1, c) : -1;
+                canvas.drawLine(left, bottom, right, bottom, next == region ? linePaint : majorLinePaint);
+                if (c == 0 || layout.boxIndex(r, c - 1) < 0) canvas.drawLine(left, top, left, bottom, majorLinePaint);
+                if (r == 0 || layout.boxIndex(r - 1, c) < 0) canvas.drawLine(left, top, right, top, majorLinePaint);
+            }
+        }
+    }
+
+    private void drawCages(Canvas canvas, int cellSize) {
+        canvas.drawPath(cagePath, cagePaint);
+        float inset = cellSize * 0.1f;
+        for (int cage = 0; cage < cages.getCageCount(); cage++) {
+            int first = cages.getCells(cage)[0]; // Top-left-most cell
+            canvas.drawText(cageSumLabels[cage], (first % side) * cellSize + inset * 1.3f,
+                    (first / side) * cellSize + inset + cageSumPaint.getTextSize(), cageSumPaint);
+        }
+    }
+
+    // One segment per cell side on a cage boundary, pulled in by an inset. Where the
+    // cage continues past a corner the segment runs on to meet its neighbour's, and
+    // around inner corners it reaches the next outline, so the outlines join up cleanly.
+    private Path buildCagePath(int cellSize) {
+        Path path = new Path();
+        float inset = cellSize * 0.1f;
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                int cage = cages.getCage(r * side + c);
+                float left = c * cellSize;
+                float top = r * cellSize;
+                float right = left + cellSize;
+                float bottom = top + cellSize;
+                for (int side = -1; side <= 1; side += 2) {
+                    if (!inCage(cage, r + side, c)) {
+                        float y = side < 0 ? top + inset : bottom - inset;
+                        float x0 = !inCage(cage, r, c - 1) ? left + inset : inCage(cage, r + side, c - 1) ? left - inset : left;
+                        float x1 = !inCage(cage, r, c + 1) ? right - inset : inCage(cage, r + side, c + 1) ? right + inset : right;
+                        path.moveTo(x0, y);
+                        path.lineTo(x1, y);
+                    }
+                    if (!inCage(cage, r, c + side)) {
+                        float x = side < 0 ? left + inset : right - inset;
+                        float y0 = !inCage(cage, r - 1, c) ? top + inset : inCage(cage, r - 1, c + side) ? top - inset : top;
+                        float y1 = !inCage(cage, r + 1, c) ? bottom - inset : inCage(cage, r + 1, c + side) ? bottom + inset : bottom;
+                        path.moveTo(x, y0);
+                        path.lineTo(x, y1);
                     }
-                    return false;
                 }
             }
         }
-        return true;
+        return path;
     }
 
-    private boolean isSafe(int[][] board, int row, int col, int num) {
-        for (int i = 0; i < 9; i++) {
-            if (board[row][i] == num || board[i][col] == num) return false;
+    private boolean inCage(int cage, int row, int col) {
+        return row >= 0 && row < side && col >= 0 && col < side && cages.getCage(row * side + col) == cage;
+    }
+
+    // Empty grid with a thin progress bar along the top row while a puzzle is generated
+    private void drawGenerationPlaceholder(Canvas canvas, int cellSize) {
+        int total = generationTotal;
+        if (total > 0) {
+            float fraction = Math.min(1f, generationProgress / (float) total);
+            canvas.drawRect(0, 0, cellSize * side * fraction, cellSize / 8f, relatedPaint);
+        }
+        drawGridLines(canvas, cellSize);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        // Prevent interaction when game is paused or the puzzle is not ready yet
+        if (isPaused || isGenerating) {
+            return true;
+        }
+
+        touchNanos = event.getEventTime() * 1_000_000L; // uptimeMillis and nanoTime share the monotonic clock
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            selectionAtDown.clear();
+            selectionAtDown.or(selection);
+            dragCell = -1;
+        }
+        if (isZoomable()) {
+            // Pinch to zoom, drag to pan, tap to select, long press to add to the selection
+            scaleDetector.onTouchEvent(event);
+            if (!scaleDetector.isInProgress()) gestureDetector.onTouchEvent(event);
+        } else {
+            // Select on touch down, drag to select more, long press to add or remove a cell
+            gestureDetector.onTouchEvent(event);
+            if (action == MotionEvent.ACTION_DOWN) {
+                selectCellAt(event.getX(), event.getY());
+                if (selectedRow != -1) dragCell = cellAt(event.getX(), event.getY());
+            } else if (action == MotionEvent.ACTION_MOVE) {
+                extendSelectionTo(cellAt(event.getX(), event.getY()));
+            }
         }
-        int startRow = row - row % 3, startCol = col - col % 3;
-        for (int i = 0; i < 3; i++)
-            for (int j = 0; j < 3; j++)
-                if (board[startRow + i][startCol + j] == num) return false;
         return true;
     }
 
-    // Update generateRandomSudoku to use removeNumbers
-    private void generateRandomSudoku() {
-        // Clear all arrays first
-        for (int r = 0; r < 9; r++) {
-            for (int c = 0; c < 9; c++) {
-                solution[r][c] = 0;
-                board[r][c] = 0;
-                initialBoard[r][c] = 0;
+    // Active cell under a point of the view, -1 if none
+    private int cellAt(float x, float y) {
+        float zoomedCell = zoomedCellSize();
+        int col = (int) ((x + panX) / zoomedCell);
+        int row = (int) ((y + panY) / zoomedCell);
+        if (row < 0 || row >= side || col < 0 || col >= side || !layout.isActive(row * side + col)) return -1;
+        return row * side + col;
+    }
+
+    private void selectOnly(int row, int col) {
+        selection.clear();
+        selection.set(row * side + col);
+        selectedRow = row;
+        selectedCol = col;
+    }
+
+    private void clearSelection() {
+        selection.clear();
+        selectedRow = -1;
+        selectedCol = -1;
+    }
+
+    // Cells selected right now, the anchor included
+    public int getSelectionCount() {
+        return selection.cardinality();
+    }
+
+    private void extendSelectionTo(int cell) {
+        if (dragCell < 0 || cell < 0 || cell == dragCell) return;
+        dragCell = cell;
+        selection.set(cell);
+        invalidate();
+    }
+
+    // Long press: back to the selection from before this touch, whose touch down already
+    // reselected, then add the cell or take it out. Dragging on from there adds more.
+    private void toggleCellAt(float x, float y) {
+        int cell = cellAt(x, y);
+        if (cell < 0) return;
+        selection.clear();
+        selection.or(selectionAtDown);
+        selection.flip(cell);
+        int anchor = selection.get(cell) ? cell : selection.nextSetBit(0);
+        if (anchor >= 0) {
+            selectedRow = anchor / side;
+            selectedCol = anchor % side;
+        } else {
+            clearSelection();
+        }
+        dragCell = selection.get(cell) ? cell : -1;
+        performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+        invalidate();
+    }
+
+    private void selectCellAt(float x, float y) {
+        int cell = cellAt(x, y);
+        if (cell >= 0) {
+            int row = cell / side;
+            int col = cell % side;
+            int oldRow = selectedRow;
+            int oldCol = selectedCol;
+            markInput(touchNanos);
+            selectOnly(row, col);
+            invalidate();
+            if (oldRow != -1 && oldCol != -1 && (oldRow != row || oldCol != col) && isCellOnScreen(oldRow, oldCol)) {
+                float pixels = zoomedCellSize();
+                effects.slide(oldCol * pixels - panX, oldRow * pixels - panY, col * pixels - panX, row * pixels - panY, pixels, SELECTION_TRAIL);
             }
         }
+    }
+
+    // Cell size in view pixels at the current zoom
+    private float zoomedCellSize() {
+        return Math.min(getWidth(), getHeight()) / side * zoom;
+    }
+
+    // Effects are drawn over the parent, so they only start on cells fully inside the view
+    private boolean isCellOnScreen(int row, int col) {
+        float cell = zoomedCellSize();
+        float left = col * cell - panX;
+        float top = row * cell - panY;
+        return left >= 0 && top >= 0 && left + cell <= getWidth() && top + cell <= getHeight();
+    }
+
+    // 16x16, 25x25 and Samurai cells are too small to hit reliably at full view
+    private boolean isZoomable() {
+        return side > 9;
+    }
+
+    private void initGestures(Context context) {
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                // Up to the cell size of a 9x9 board, keeping the point between the fingers in place
+                float next = Math.max(1f, Math.min(side / 9f, zoom * detector.getScaleFactor()));
+                panX = (panX + detector.getFocusX()) * next / zoom - detector.getFocusX();
+                panY = (panY + detector.getFocusY()) * next / zoom - detector.getFocusY();
+                zoom = next;
+                clampPan();
+                invalidate();
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
 
-        // Fill the solution board with a valid Sudoku
-        fillBoard(solution);
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                if (!isZoomable()) return false; // Boards that fit drag to select instead
+                panX += distanceX;
+                panY += distanceY;
+                clampPan();
+                invalidate();
+                return true;
+            }
 
-        // Copy solution to board
-        for (int r = 0; r < 9; r++) {
-            for (int c = 0; c < 9; c++) {
-                board[r][c] = solution[r][c];
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                if (!isZoomable()) return false; // Already selected on touch down
+                selectCellAt(e.getX(), e.getY());
+                return true;
             }
+
+            @Override
+            public void onLongPress(MotionEvent e) {
+                toggleCellAt(e.getX(), e.getY());
+            }
+        });
+    }
+
+    // Keep the zoomed board covering the view
+    private void clampPan() {
+        float boardSize = Math.min(getWidth(), getHeight()) / side * side * zoom;
+        panX = Math.max(0, Math.min(panX, boardSize - getWidth()));
+        panY = Math.max(0, Math.min(panY, boardSize - getHeight()));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        clampPan();
+        buildPencilAtlas();
+    }
+
+    // Generate a puzzle with a unique solution and the configured number of clues,
+    // or take one from the puzzle bank when it has a matching band
+    private void generateRandomSudoku() {
+        Puzzle banked = hasBank() ? puzzleBank.pick(clues, easiest, hardest, random) : null;
+        if (banked != null) {
+            symmetry.randomize(random);
+            setPuzzle(banked, symmetry);
+        } else {
+            setPuzzle(generator.generate(clues, easiest, hardest, null, null));
         }
+    }
 
-        // Remove numbers to create the puzzle
-        removeNumbers(board, clues);
+    public void setPuzzleBank(PuzzleBank bank) {
+        puzzleBank = bank;
+    }
 
-        // Save the puzzle state as initial board (clues)
-        for (int r = 0; r < 9; r++) {
-            for (int c = 0; c < 9; c++) {
-                initialBoard[r][c] = board[r][c];
+    // The bank and its symmetry transforms only hold 9x9 puzzles
+    private boolean hasBank() {
+        return puzzleBank != null && shape == GridShape.CLASSIC;
+    }
+
+    private void setPuzzle(Puzzle puzzle) {
+        lastGenerationStats = puzzle.getStats();
+        puzzleId = puzzle.getId();
+
+        int[][] puzzleBoard = puzzle.getBoard();
+        int[][] puzzleSolution = puzzle.getSolution();
+        showLayout(puzzle.getShape());
+        setCages(puzzle.getCages());
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                solution[r][c] = puzzleSolution[r][c];
+                board[r][c] = puzzleBoard[r][c];
+                // Save the puzzle state as initial board (clues)
+                initialBoard[r][c] = puzzleBoard[r][c];
             }
         }
+        state.syncGrid();
+    }
+
+    // Same as setPuzzle(Puzzle), but writes the transformed puzzle straight into the board arrays
+    private void setPuzzle(Puzzle puzzle, SymmetryTransform transform) {
+        lastGenerationStats = puzzle.getStats();
+        puzzleId = null; // The ID names the untransformed puzzle
+
+        transform.apply(puzzle.getSolution(), solution);
+        transform.apply(puzzle.getBoard(), initialBoard);
+        transform.apply(puzzle.getBoard(), board);
+        state.syncGrid();
+    }
+
+    // Cost counters of the most recent puzzle generation (null before the first one)
+    public GenerationStats getLastGenerationStats() {
+        return lastGenerationStats;
+    }
+
+    // Cost counters summed over every puzzle generated by this board
+    public GenerationStats getTotalGenerationStats() {
+        return generator.getTotalStats();
     }
 
     // Add hint logic
     public void showHint() {
-        if (isPaused) return; // Prevent action when paused
+        if (isPaused || isGenerating) return; // Prevent action when paused or still generating
 
         if (selectedRow != -1 && selectedCol != -1 && board[selectedRow][selectedCol] == 0) {
-            board[selectedRow][selectedCol] = solution[selectedRow][selectedCol];
+            placeCell(selectedRow, selectedCol, solution[selectedRow][selectedCol]);
 
             // Notify that board has changed
             if (sudokuListener != null) {
@@ -439,8 +1185,12 @@ public class SudokuBoardView extends View {
 
     // Add erase function
     public void eraseCell() {
-        if (isPaused) return; // Prevent action when paused
+        if (isPaused || isGenerating) return; // Prevent action when paused or still generating
 
+        if (selection.cardinality() > 1 && !gameCompleted) {
+            eraseSelection();
+            return;
+        }
         if (selectedRow != -1 && selectedCol != -1 && !gameCompleted) {
             // Check if the cell is not a clue (initial cell)
             if (initialBoard[selectedRow][selectedCol] != 0) {
@@ -456,12 +1206,10 @@ public class SudokuBoardView extends View {
             int erasedNumber = board[selectedRow][selectedCol];
 
             // Clear the number
-            board[selectedRow][selectedCol] = 0;
+            placeCell(selectedRow, selectedCol, 0);
 
             // Clear any pencil marks for this cell
-            for (int n = 1; n <= 9; n++) {
-                pencilMarks[selectedRow][selectedCol][n] = false;
-            }
+            state.clearPencilMarks(selectedRow, selectedCol);
 
             // If fast pencil mode is enabled, update pencil marks after erasing
             if (fastPencilMode && erasedNumber != 0) {
@@ -482,56 +1230,347 @@ public class SudokuBoardView extends View {
         }
     }
 
+    // Pencil mode on a multi-selection: add the number to every selected empty cell that
+    // allows it, or take it out of all of them when they all have it already
+    private void togglePencilMarkInSelection(int number) {
+        long inputNanos = System.nanoTime();
+        int cells = 0;
+        boolean add = false;
+        for (int cell = selection.nextSetBit(0); cell >= 0; cell = selection.nextSetBit(cell + 1)) {
+            int r = cell / side;
+            int c = cell % side;
+            if (initialBoard[r][c] != 0 || board[r][c] != 0 || !isNumberAllowed(r, c, number)) continue;
+            cells++;
+            if (!pencilMarks[r][c][number]) add = true;
+        }
+        if (cells == 0) return;
+
+        MoveHistory[] batch = new MoveHistory[cells];
+        int count = 0;
+        for (int cell = selection.nextSetBit(0); cell >= 0; cell = selection.nextSetBit(cell + 1)) {
+            int r = cell / side;
+            int c = cell % side;
+            if (initialBoard[r][c] != 0 || board[r][c] != 0 || !isNumberAllowed(r, c, number)) continue;
+            batch[count++] = new MoveHistory(r, c, board[r][c], pencilMarks[r][c]);
+            pencilMarks[r][c][number] = add;
+        }
+        moveHistory.push(new MoveHistory(batch));
+        markInput(inputNanos);
+        if (sudokuListener != null) {
+            sudokuListener.onBoardChanged();
+        }
+        invalidate();
+    }
+
+    // Erase numbers and pencil marks from every selected cell that is not a clue
+    private void eraseSelection() {
+        long inputNanos = System.nanoTime();
+        // Record everything the erase may change before changing any of it: the selected
+        // cells, and in fast pencil mode the empty peers that get erased numbers back as marks
+        BitSet affected = new BitSet(side * side);
+        for (int cell = selection.nextSetBit(0); cell >= 0; cell = selection.nextSetBit(cell + 1)) {
+            int r = cell / side;
+            int c = cell % side;
+            if (initialBoard[r][c] != 0) continue;
+            affected.set(cell);
+            if (fastPencilMode && board[r][c] != 0) {
+                for (int peer : layout.getPeers(cell)) {
+                    if (board[peer / side][peer % side] == 0) affected.set(peer);
+                }
+            }
+        }
+        if (affected.isEmpty()) return;
+
+        MoveHistory[] batch = new MoveHistory[affected.cardinality()];
+        int count = 0;
+        for (int cell = affected.nextSetBit(0); cell >= 0; cell = affected.nextSetBit(cell + 1)) {
+            int r = cell / side;
+            int c = cell % side;
+            MoveHistory move = new MoveHistory(r, c, board[r][c], pencilMarks[r][c]);
+            move.peer = !selection.get(cell);
+            batch[count++] = move;
+        }
+
+        beginBatch();
+        for (int cell = selection.nextSetBit(0); cell >= 0; cell = selection.nextSetBit(cell + 1)) {
+            int r = cell / side;
+            int c = cell % side;
+            if (initialBoard[r][c] != 0) continue;
+            int erasedNumber = board[r][c];
+            placeCell(r, c, 0);
+            state.clearPencilMarks(r, c);
+            if (fastPencilMode && erasedNumber != 0) {
+                updatePencilMarksAfterErase(r, c, erasedNumber);
+            }
+        }
+        endBatch();
+        moveHistory.push(new MoveHistory(batch));
+        markInput(inputNanos);
+        if (sudokuListener != null) {
+            sudokuListener.onBoardChanged();
+        }
+        invalidate();
+    }
+
     public void generateNewPuzzle() {
+        cancelPuzzleGeneration();
+
         // Reset game state
         gameCompleted = false;
-        selectedRow = -1;
-        selectedCol = -1;
+        clearSelection();
 
         // Clear move history when starting a new game
         clearMoveHistory();
 
         generateRandomSudoku();
         // Copy the puzzle state to initialBoard after removing numbers
-        for (int r = 0; r < 9; r++) {
-            for (int c = 0; c < 9; c++) {
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
                 initialBoard[r][c] = board[r][c];
             }
         }
         invalidate();
     }
 
-    private boolean isBoardCompleteAndCorrect() {
-        for (int r = 0; r < 9; r++) {
-            for (int c = 0; c < 9; c++) {
-                if (board[r][c] == 0 || board[r][c] != solution[r][c]) {
-                    return false;
+    // Generate a puzzle on a background thread, or take a matching one from the puzzle
+    // bank there when there is one. The board shows an empty placeholder grid
+    // and ignores input until the puzzle is loaded. The token cancels the work and its
+    // budget limits how long clue removal may run; the callback may be null.
+    public Future<Puzzle> generateNewPuzzleAsync(CancellationToken token, GenerationCallback callback) {
+        return generateNewPuzzleAsync(token, null, null, 0, callback);
+    }
+
+    // Same, with puzzles from source tried before the bank, and candidates the filter
+    // refuses skipped. The source and then the bank each offer up to maxRejections + 1
+    // candidates before the next one is asked; only live generation, as the last resort,
+    // takes its candidate anyway after maxRejections refusals. source and filter may be null.
+    public Future<Puzzle> generateNewPuzzleAsync(final CancellationToken token, final PuzzleSource source,
+            final PuzzleFilter filter, final int maxRejections, final GenerationCallback callback) {
+        cancelPuzzleGeneration();
+        generationToken = token;
+        isGenerating = true;
+        generationProgress = 0;
+        generationTotal = 0;
+        clearSelection();
+        invalidate();
+
+        final PuzzleGenerator worker = asyncGenerator;
+        final PuzzleBank bank = hasBank() ? puzzleBank : null;
+        final int target = clues;
+        final Technique targetEasiest = easiest;
+        final Technique targetHardest = hardest;
+        return generationExecutor.submit(new Callable<Puzzle>() {
+            @Override
+            public Puzzle call() {
+                try {
+                    // Cheapest first: a ready puzzle costs nothing, a banked one only its solution
+                    Puzzle puzzle = null;
+                    boolean banked = false;
+                    for (int rejected = 0; puzzle == null && source != null && rejected <= maxRejections; rejected++) {
+                        token.throwIfCancelled();
+                        Puzzle candidate = source.next();
+                        if (candidate == null) break;
+                        if (accepts(filter, candidate)) puzzle = candidate;
+                    }
+                    for (int rejected = 0; puzzle == null && bank != null && rejected <= maxRejections; rejected++) {
+                        token.throwIfCancelled();
+                        Puzzle candidate = bank.pick(target, targetEasiest, targetHardest, asyncRandom);
+                        if (candidate == null) break;
+                        if (accepts(filter, candidate)) {
+                            puzzle = candidate;
+                            banked = true;
+                        }
+                    }
+                    for (int rejected = 0; puzzle == null; rejected++) {
+                        Puzzle candidate = worker.generate(target, targetEasiest, targetHardest, token, new PuzzleGenerator.ProgressListener() {
+                            @Override
+                            public void onProgress(int removed, int toRemove) {
+                                generationProgress = removed;
+                                generationTotal = toRemove;
+                                postInvalidate();
+                            }
+                        });
+                        if (rejected >= maxRejections || accepts(filter, candidate)) puzzle = candidate;
+                    }
+                    postPuzzle(token, puzzle, true, banked, callback);
+                    return puzzle;
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    postFailure(token, e, callback);
+                    throw e;
                 }
             }
-        }
-        return true;
+        });
     }
 
-    // Method to get the remaining count for a specific number
-    public int getRemainingCount(int number) {
-        int count = 0;
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                if (solution[row][col] == number && board[row][col] != number) {
-                    count++;
+    // Regenerate the puzzle behind a PuzzleId on the generation thread, for loading a saved
+    // game. The board shows the placeholder meanwhile. The puzzle is handed to the callback
+    // without being loaded; an ID from another generator version fails with
+    // IllegalArgumentException.
+    public Future<Puzzle> rebuildPuzzleAsync(final String id, final GenerationCallback callback) {
+        cancelPuzzleGeneration();
+        final CancellationToken token = new CancellationToken();
+        generationToken = token;
+        isGenerating = true;
+        generationProgress = 0;
+        generationTotal = 0;
+        clearSelection();
+        invalidate();
+
+        return generationExecutor.submit(new Callable<Puzzle>() {
+            @Override
+            public Puzzle call() {
+                try {
+                    Puzzle puzzle = PuzzleGenerator.fromId(id);
+                    postPuzzle(token, puzzle, false, false, callback);
+                    return puzzle;
+                } catch (RuntimeException e) {
+                    postFailure(token, e, callback);
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private static boolean accepts(PuzzleFilter filter, Puzzle candidate) {
+        return filter == null || filter.accept(candidate.getBoard());
+    }
+
+    // Deliver a puzzle from the generation thread on the main thread, loading it first if
+    // asked; a banked one is loaded under a random symmetry transform
+    private void postPuzzle(final CancellationToken token, final Puzzle puzzle, final boolean load, final boolean banked,
+            final GenerationCallback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Ignore results that were superseded or cancelled meanwhile
+                if (token != generationToken || token.isCancelled()) return;
+                generationToken = null;
+                isGenerating = false;
+                if (load && banked) {
+                    symmetry.randomize(random);
+                    loadPuzzle(puzzle, symmetry);
+                } else if (load) {
+                    loadPuzzle(puzzle);
+                } else {
+                    invalidate();
                 }
+                if (callback != null) callback.onPuzzleReady(puzzle);
+            }
+        });
+    }
+
+    private void postFailure(final CancellationToken token, final RuntimeException error, final GenerationCallback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (token != generationToken) return;
+                generationToken = null;
+                isGenerating = false;
+                invalidate();
+                if (callback != null) callback.onGenerationFailed(error);
             }
+        });
+    }
+
+    // Cancel a running generateNewPuzzleAsync, if any. Its callback will not be called.
+    public void cancelPuzzleGeneration() {
+        if (generationToken != null) {
+            generationToken.cancel();
+            generationToken = null;
         }
-        return count;
+        if (isGenerating) {
+            isGenerating = false;
+            invalidate();
+        }
+    }
+
+    public boolean isGenerating() {
+        return isGenerating;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        cancelPuzzleGeneration();
+        releaseGridLayer(); // Rebuilt by the next frame if the view comes back
+        releasePencilAtlas();
+        releaseCellNodes();
+        Choreographer.getInstance().removeFrameCallback(vsyncCallback);
+        effects.detach();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        buildPencilAtlas();
+        effects.attach();
+        if (frameStats != null) {
+            lastVsyncNanos = 0;
+            Choreographer.getInstance().postFrameCallback(vsyncCallback);
+        }
+    }
+
+    // Start a new game from an already generated puzzle (e.g. one taken from PuzzlePool)
+    public void loadPuzzle(Puzzle puzzle) {
+        loadPuzzle(puzzle, null);
+    }
+
+    // Start a new game from a puzzle seen through a symmetry transform (null for none)
+    public void loadPuzzle(Puzzle puzzle, SymmetryTransform transform) {
+        cancelPuzzleGeneration();
+
+        // Reset game state
+        gameCompleted = false;
+        clearSelection();
+
+        // Clear move history when starting a new game
+        clearMoveHistory();
+
+        if (transform != null) {
+            setPuzzle(puzzle, transform);
+        } else {
+            setPuzzle(puzzle);
+        }
+        invalidate();
+    }
+
+    // Start the current puzzle over: clues only, no pencil marks, no undo history
+    public void restartPuzzle() {
+        cancelPuzzleGeneration();
+
+        gameCompleted = false;
+        clearSelection();
+        clearMoveHistory();
+
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                board[r][c] = initialBoard[r][c];
+            }
+        }
+        state.clearAllPencilMarks();
+        state.syncGrid();
+        invalidate();
+    }
+
+    // ID that PuzzleGenerator.fromId turns back into the current puzzle, or null
+    public String getPuzzleId() {
+        return puzzleId;
+    }
+
+    private boolean isBoardCompleteAndCorrect() {
+        return state.isCompleteAndCorrect();
+    }
+
+    // Method to get the remaining count for a specific number
+    public int getRemainingCount(int number) {
+        return state.getRemainingCount(number);
     }
 
     // Method to get all remaining counts
     public int[] getAllRemainingCounts() {
-        int[] counts = new int[9];
-        for (int num = 1; num <= 9; num++) {
-            counts[num - 1] = getRemainingCount(num);
-        }
-        return counts;
+        return state.getAllRemainingCounts();
     }
 
     // Toggle pencil mode
@@ -571,9 +1610,7 @@ public class SudokuBoardView extends View {
     // Clear pencil marks from the selected cell
     public void clearPencilMarks(int row, int col) {
         if (row != -1 && col != -1) {
-            for (int n = 1; n <= 9; n++) {
-                pencilMarks[row][col][n] = false;
-            }
+            state.clearPencilMarks(row, col);
 
             // Notify that board has changed
             if (sudokuListener != null) {
@@ -586,24 +1623,7 @@ public class SudokuBoardView extends View {
 
     // Method to fill all empty cells with valid pencil marks
     private void fillAllPencilMarks() {
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                // Only add pencil marks to empty cells
-                if (board[row][col] == 0) {
-                    // Clear existing pencil marks first
-                    for (int n = 1; n <= 9; n++) {
-                        pencilMarks[row][col][n] = false;
-                    }
-
-                    // Add all valid numbers as pencil marks
-                    for (int num = 1; num <= 9; num++) {
-                        if (isNumberAllowed(row, col, num)) {
-                            pencilMarks[row][col][num] = true;
-                        }
-                    }
-                }
-            }
-        }
+        state.fillAllPencilMarks();
 
         // Notify that board has changed
         if (sudokuListener != null) {
@@ -613,13 +1633,7 @@ public class SudokuBoardView extends View {
 
     // Method to clear all pencil marks from the grid
     private void clearAllPencilMarks() {
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                for (int n = 1; n <= 9; n++) {
-                    pencilMarks[row][col][n] = false;
-                }
-            }
-        }
+        state.clearAllPencilMarks();
 
         // Notify that board has changed
         if (sudokuListener != null) {
@@ -629,99 +1643,39 @@ public class SudokuBoardView extends View {
 
     // Method to update pencil marks after placing a number (for fast pencil mode)
     private void updatePencilMarksAfterNumberPlacement(int row, int col, int number) {
-        // Remove the placed number from pencil marks in the same row
-        for (int c = 0; c < 9; c++) {
-            if (board[row][c] == 0) { // Only update empty cells
-                pencilMarks[row][c][number] = false;
-            }
-        }
-
-        // Remove the placed number from pencil marks in the same column
-        for (int r = 0; r < 9; r++) {
-            if (board[r][col] == 0) { // Only update empty cells
-                pencilMarks[r][col][number] = false;
-            }
-        }
-
-        // Remove the placed number from pencil marks in the same 3x3 box
-        int startRow = (row / 3) * 3;
-        int startCol = (col / 3) * 3;
-        for (int r = startRow; r < startRow + 3; r++) {
-            for (int c = startCol; c < startCol + 3; c++) {
-                if (board[r][c] == 0) { // Only update empty cells
-                    pencilMarks[r][c][number] = false;
-                }
-            }
-        }
+        state.updatePencilMarksAfterNumberPlacement(row, col, number);
     }
 
     // Method to update pencil marks after erasing a number (for fast pencil mode)
     private void updatePencilMarksAfterErase(int row, int col, int erasedNumber) {
-        // First, add valid pencil marks back to the erased cell
-        if (board[row][col] == 0) { // Should be empty now
-            for (int num = 1; num <= 9; num++) {
-                if (isNumberAllowed(row, col, num)) {
-                    pencilMarks[row][col][num] = true;
-                }
-            }
-        }
-
-        // Then, check if the erased number can now be added back to related cells
-        // Check cells in the same row
-        for (int c = 0; c < 9; c++) {
-            if (board[row][c] == 0 && isNumberAllowed(row, c, erasedNumber)) {
-                pencilMarks[row][c][erasedNumber] = true;
-            }
-        }
-
-        // Check cells in the same column
-        for (int r = 0; r < 9; r++) {
-            if (board[r][col] == 0 && isNumberAllowed(r, col, erasedNumber)) {
-                pencilMarks[r][col][erasedNumber] = true;
-            }
-        }
-
-        // Check cells in the same 3x3 box
-        int startRow = (row / 3) * 3;
-        int startCol = (col / 3) * 3;
-        for (int r = startRow; r < startRow + 3; r++) {
-            for (int c = startCol; c < startCol + 3; c++) {
-                if (board[r][c] == 0 && isNumberAllowed(r, c, erasedNumber)) {
-                    pencilMarks[r][c][erasedNumber] = true;
-                }
-            }
-        }
+        state.updatePencilMarksAfterErase(row, col, erasedNumber);
     }
 
     // Check if a number is allowed in the given cell (row, col)
     private boolean isNumberAllowed(int row, int col, int number) {
-        // A number is allowed if it's not already in the same row, column, or 3x3 box
-        for (int i = 0; i < 9; i++) {
-            if (board[row][i] == number || board[i][col] == number) return false;
-        }
-        int startRow = row - row % 3, startCol = col - col % 3;
-        for (int i = 0; i < 3; i++)
-            for (int j = 0; j < 3; j++)
-                if (board[startRow + i][startCol + j] == number) return false;
-        return true;
+        // A number is allowed if it's not already in the same row, column, or box
+        return state.isNumberAllowed(row, col, number);
     }
 
     // Undo the last move
     public void undoLastMove() {
-        if (isPaused) return; // Prevent action when paused
+        if (isPaused || isGenerating) return; // Prevent action when paused or still generating
 
         if (!moveHistory.isEmpty()) {
             MoveHistory lastMove = moveHistory.pop();
 
-            // Restore the previous state
-            board[lastMove.row][lastMove.col] = lastMove.previousValue;
-
-            // Restore pencil marks for this cell
-            System.arraycopy(lastMove.previousPencilMarks, 0, pencilMarks[lastMove.row][lastMove.col], 0, 10);
-
-            // Select the cell that was undone
-            selectedRow = lastMove.row;
-            selectedCol = lastMove.col;
+            // Restore the previous state, and select the cells that were undone
+            selectOnly(lastMove.row, lastMove.col);
+            if (lastMove.batch != null) {
+                beginBatch();
+                for (MoveHistory move : lastMove.batch) {
+                    restoreMove(move);
+                    if (!move.peer) selection.set(move.row * side + move.col);
+                }
+                endBatch();
+            } else {
+                restoreMove(lastMove);
+            }
 
             // Notify that board has changed
             if (sudokuListener != null) {
@@ -732,6 +1686,39 @@ public class SudokuBoardView extends View {
         }
     }
 
+    // Every single-cell write goes through here, so the listener can update just the
+    // number buttons whose count changed instead of recounting the board
+    private void placeCell(int row, int col, int number) {
+        int oldValue = board[row][col];
+        if (oldValue == number) return;
+        int changedDigits = state.place(row, col, number);
+        if (batching) {
+            batchChangedDigits |= changedDigits;
+        } else if (sudokuListener != null) {
+            sudokuListener.onCellChanged(row, col, oldValue, number, changedDigits);
+        }
+    }
+
+    // Between these, placeCell collects the changed digits for a single onCellsChanged
+    private void beginBatch() {
+        batching = true;
+        batchChangedDigits = 0;
+    }
+
+    private void endBatch() {
+        batching = false;
+        if (sudokuListener != null) {
+            sudokuListener.onCellsChanged(batchChangedDigits);
+        }
+    }
+
+    private void restoreMove(MoveHistory move) {
+        placeCell(move.row, move.col, move.previousValue);
+
+        // Restore pencil marks for this cell
+        System.arraycopy(move.previousPencilMarks, 0, pencilMarks[move.row][move.col], 0, size + 1);
+    }
+
     // Check if undo is available
     public boolean canUndo() {
         return !moveHistory.isEmpty();
@@ -783,22 +1770,26 @@ public class SudokuBoardView extends View {
     }
 
     public void loadGameState(int[][] currentBoard, int[][] initialBoard, int[][] solution, boolean[][][] pencilMarks) {
-        // Copy the board states
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                this.board[i][j] = currentBoard[i][j];
-                this.initialBoard[i][j] = initialBoard[i][j];
-                this.solution[i][j] = solution[i][j];
-                // Copy pencil marks
-                for (int k = 0; k < 10; k++) {
-                    this.pencilMarks[i][j][k] = pencilMarks[i][j][k];
-                }
-            }
-        }
+        loadGameState(currentBoard, initialBoard, solution, pencilMarks, null);
+    }
+
+    public void loadGameState(int[][] currentBoard, int[][] initialBoard, int[][] solution, boolean[][][] pencilMarks, String puzzleId) {
+        loadGameState(GridShape.of(currentBoard.length), null, currentBoard, initialBoard, solution, pencilMarks, puzzleId);
+    }
+
+    // Restore a game played on the given layout and, for Killer, cages, switching shape if needed
+    public void loadGameState(GridShape layout, CageLayout cages, int[][] currentBoard, int[][] initialBoard,
+                              int[][] solution, boolean[][][] pencilMarks, String puzzleId) {
+        cancelPuzzleGeneration();
+        showLayout(layout);
+        setCages(cages);
+        this.puzzleId = puzzleId;
+
+        // Copy the board states and pencil marks
+        state.load(currentBoard, initialBoard, solution, pencilMarks);
 
         // Clear selection and move history when loading
-        selectedRow = -1;
-        selectedCol = -1;
+        clearSelection();
         clearMoveHistory();
 
         // Reset game completion state
@@ -0,0 +1,128 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.Random;
+
+// The original backtracker: fills the first empty cell with each of its
+// candidates in turn (shuffled when a Random is given) and recurses.
+public class BacktrackingSolver implements SudokuSolver {
+    private final Random random;
+    private final GridShape shape;
+    private final int side;
+    private final int cells;
+    private final CandidateGrid grid;
+    private final int[][] work;
+    private final int[][] order; // Candidate order per search depth, reused between calls
+
+    private SolutionVisitor visitor;
+    private int limit;
+    private int found;
+    private boolean stopped;
+    private long nodes;
+    private long budget; // Nodes left for the current search
+
+    public BacktrackingSolver(Random random) {
+        this(GridShape.CLASSIC, random);
+    }
+
+    public BacktrackingSolver(GridShape shape, Random random) {
+        this.random = random;
+        this.shape = shape;
+        side = shape.getSide();
+        cells = shape.getCellCount();
+        grid = new CandidateGrid(shape);
+        work = shape.newBoard();
+        order = new int[cells][shape.getSize()];
+    }
+
+    @Override
+    public boolean solve(int[][] board) {
+        final int[][] target = board;
+        start(board, 1, Long.MAX_VALUE, new SolutionVisitor() {
+            @Override
+            public boolean onSolution(int[][] solution) {
+                copy(solution, target);
+                return false;
+            }
+        });
+        return found > 0;
+    }
+
+    @Override
+    public int countSolutions(int[][] board, int limit) {
+        start(board, limit, Long.MAX_VALUE, null);
+        return found;
+    }
+
+    @Override
+    public int countSolutions(int[][] board, int limit, long maxNodes) {
+        start(board, limit, maxNodes, null);
+        return found < limit && budget == 0 ? -1 : found;
+    }
+
+    @Override
+    public void enumerate(int[][] board, SolutionVisitor visitor) {
+        start(board, Integer.MAX_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    private void start(int[][] board, int limit, long maxNodes, SolutionVisitor visitor) {
+        this.visitor = visitor;
+        this.limit = limit;
+        budget = maxNodes;
+        found = 0;
+        stopped = false;
+        if (limit <= 0) return;
+
+        copy(board, work);
+        grid.load(work);
+        if (grid.hasConflicts()) return;
+        search(0, 0);
+    }
+
+    private void search(int start, int depth) {
+        for (int index = start; index < cells; index++) {
+            int row = index / side;
+            int col = index % side;
+            if (work[row][col] != 0 || !shape.isActive(index)) continue;
+
+            int[] numbers = order[depth];
+            int count = 0;
+            for (int mask = grid.candidates(row, col); mask != 0; mask &= mask - 1) {
+                numbers[count++] = CandidateGrid.lowestDigit(mask);
+            }
+            if (random != null) {
+                for (int i = count - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = numbers[i];
+                    numbers[i] = numbers[j];
+                    numbers[j] = tmp;
+                }
+            }
+            for (int i = 0; i < count && !stopped; i++) {
+                work[row][col] = numbers[i];
+                nodes++;
+                if (--budget == 0) stopped = true;
+                grid.place(row, col, numbers[i]);
+                search(index + 1, depth + 1);
+                grid.erase(row, col);
+                work[row][col] = 0;
+            }
+            return;
+        }
+
+        // No empty cell left: the board is a solution
+        found++;
+        if (visitor != null && !visitor.onSolution(work)) stopped = true;
+        if (found >= limit) stopped = true;
+    }
+
+    static void copy(int[][] from, int[][] to) {
+        for (int r = 0; r < from.length; r++) {
+            System.arraycopy(from[r], 0, to[r], 0, from[r].length);
+        }
+    }
+}
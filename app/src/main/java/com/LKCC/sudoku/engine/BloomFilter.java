@@ -0,0 +1,75 @@
+package com.LKCC.sudoku.engine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Fixed-size probabilistic set of 128-bit fingerprints. mightContain never misses an added
+// key and wrongly reports roughly (1 - e^(-k*n/m))^k of the others, for n keys in m bits with
+// k probes. The k probe positions come from double hashing the two halves of the key.
+public class BloomFilter {
+    private static final int MAGIC = 0x424C4F4D; // "BLOM"
+
+    private final long[] words;
+    private final int bits;
+    private final int probes;
+    private int count;
+
+    // bits is rounded up to a multiple of 64
+    public BloomFilter(int bits, int probes) {
+        this.words = new long[(bits + 63) / 64];
+        this.bits = words.length * 64;
+        this.probes = probes;
+    }
+
+    public void add(long h1, long h2) {
+        for (int i = 0; i < probes; i++) {
+            int bit = index(h1, h2, i);
+            words[bit >>> 6] |= 1L << bit;
+        }
+        count++;
+    }
+
+    public boolean mightContain(long h1, long h2) {
+        for (int i = 0; i < probes; i++) {
+            int bit = index(h1, h2, i);
+            if ((words[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private int index(long h1, long h2, int i) {
+        long h = h1 + i * h2;
+        return (int) ((h >>> 1) % bits);
+    }
+
+    // Keys added so far
+    public int getCount() {
+        return count;
+    }
+
+    // Expected false positive rate at the current count
+    public double getFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) probes * count / bits), probes);
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(bits);
+        out.writeInt(probes);
+        out.writeInt(count);
+        for (long word : words) out.writeLong(word);
+    }
+
+    // Read a filter written by writeTo. Throws IOException if the data is not one.
+    public static BloomFilter readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a Bloom filter");
+        int bits = in.readInt();
+        int probes = in.readInt();
+        if (bits <= 0 || bits % 64 != 0 || probes <= 0) throw new IOException("Corrupt Bloom filter");
+        BloomFilter filter = new BloomFilter(bits, probes);
+        filter.count = in.readInt();
+        for (int i = 0; i < filter.words.length; i++) filter.words[i] = in.readLong();
+        return filter;
+    }
+}
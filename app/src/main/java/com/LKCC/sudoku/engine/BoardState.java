@@ -0,0 +1,168 @@
+package com.LKCC.sudoku.engine;
+
+// What the player sees and edits: clues, solution, current entries and pencil marks, with
+// the candidate masks of a CandidateGrid kept in sync with the entries. SudokuBoardView
+// draws this state and handles input; keeping it free of Android types lets the tools and
+// benchmarks drive exactly the same code on the desktop JVM.
+public class BoardState {
+    private final GridShape shape;
+    private final int size;
+    private final int side;
+    private final int[][] board;
+    private final int[][] initialBoard;
+    private final int[][] solution;
+    private final boolean[][][] pencilMarks; // [row][col][number] - index 0 unused
+    private final CandidateGrid grid;
+    private final int[] remaining; // [number] cells whose solution is number and do not show it yet
+
+    public BoardState() {
+        this(GridShape.CLASSIC);
+    }
+
+    public BoardState(GridShape shape) {
+        this.shape = shape;
+        this.size = shape.getSize();
+        this.side = shape.getSide();
+        board = shape.newBoard();
+        initialBoard = shape.newBoard();
+        solution = shape.newBoard();
+        pencilMarks = new boolean[side][side][size + 1];
+        grid = new CandidateGrid(shape);
+        remaining = new int[size + 1];
+    }
+
+    public GridShape getShape() { return shape; }
+
+    // The arrays are live: callers that write to board directly must call syncGrid() afterwards
+    public int[][] getBoard() { return board; }
+    public int[][] getInitialBoard() { return initialBoard; }
+    public int[][] getSolution() { return solution; }
+    public boolean[][][] getPencilMarks() { return pencilMarks; }
+    public CandidateGrid getGrid() { return grid; }
+
+    // Copy a game in. pencilMarks may be null to start without marks.
+    public void load(int[][] currentBoard, int[][] initialBoard, int[][] solution, boolean[][][] pencilMarks) {
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                this.board[r][c] = currentBoard[r][c];
+                this.initialBoard[r][c] = initialBoard[r][c];
+                this.solution[r][c] = solution[r][c];
+                for (int k = 0; k <= size; k++) {
+                    this.pencilMarks[r][c][k] = pencilMarks != null && pencilMarks[r][c][k];
+                }
+            }
+        }
+        syncGrid();
+    }
+
+    // Rebuild the candidate masks and remaining counts after board was written directly
+    public void syncGrid() {
+        grid.load(board);
+        for (int num = 0; num <= size; num++) remaining[num] = 0;
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                if (board[r][c] != solution[r][c]) remaining[solution[r][c]]++;
+            }
+        }
+        remaining[0] = 0; // Inactive cells
+    }
+
+    // Put a number in a cell (0 erases). Only the count of the cell's solution digit can
+    // change; returns the CandidateGrid.bit mask of the digits whose count did, 0 for none.
+    public int place(int row, int col, int number) {
+        int old = board[row][col];
+        board[row][col] = number;
+        grid.place(row, col, number);
+        int target = solution[row][col];
+        if (target == 0 || (old == target) == (number == target)) return 0;
+        remaining[target] += old == target ? 1 : -1;
+        return CandidateGrid.bit(target);
+    }
+
+    // Check if a number is allowed in the given cell: not already in any of its units
+    public boolean isNumberAllowed(int row, int col, int number) {
+        return grid.isAllowed(row, col, number);
+    }
+
+    public boolean isCompleteAndCorrect() {
+        // Most moves leave empty cells, which the filled counter answers without a scan
+        if (!grid.isFull()) return false;
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                if (board[r][c] != solution[r][c]) { // Inactive cells are 0 in both
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // How many cells whose solution is number do not show it yet
+    public int getRemainingCount(int number) {
+        return remaining[number];
+    }
+
+    public int[] getAllRemainingCounts() {
+        int[] counts = new int[size];
+        System.arraycopy(remaining, 1, counts, 0, size);
+        return counts;
+    }
+
+    // Fill every empty cell with all the numbers still allowed there
+    public void fillAllPencilMarks() {
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                // Only add pencil marks to empty cells
+                if (board[row][col] == 0 && shape.isActive(row * side + col)) {
+                    int candidates = grid.candidates(row, col);
+                    for (int num = 1; num <= size; num++) {
+                        pencilMarks[row][col][num] = (candidates & CandidateGrid.bit(num)) != 0;
+                    }
+                }
+            }
+        }
+    }
+
+    public void clearAllPencilMarks() {
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                clearPencilMarks(row, col);
+            }
+        }
+    }
+
+    public void clearPencilMarks(int row, int col) {
+        for (int n = 1; n <= size; n++) {
+            pencilMarks[row][col][n] = false;
+        }
+    }
+
+    // Remove a just placed number from the pencil marks of the empty cells that see it
+    public void updatePencilMarksAfterNumberPlacement(int row, int col, int number) {
+        for (int peer : shape.getPeers(row * side + col)) {
+            int r = peer / side;
+            int c = peer % side;
+            if (board[r][c] == 0) pencilMarks[r][c][number] = false;
+        }
+    }
+
+    // After erasing a number, mark the erased cell's candidates and give the erased number
+    // back to the empty cells that see it, where it is allowed again
+    public void updatePencilMarksAfterErase(int row, int col, int erasedNumber) {
+        if (board[row][col] == 0) { // Should be empty now
+            int candidates = grid.candidates(row, col);
+            for (int num = 1; num <= size; num++) {
+                if ((candidates & CandidateGrid.bit(num)) != 0) {
+                    pencilMarks[row][col][num] = true;
+                }
+            }
+        }
+        for (int peer : shape.getPeers(row * side + col)) {
+            int r = peer / side;
+            int c = peer % side;
+            if (board[r][c] == 0 && isNumberAllowed(r, c, erasedNumber)) {
+                pencilMarks[r][c][erasedNumber] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.LKCC.sudoku.engine;
+
+// Digit combinations of Killer cages: for every cage size and sum, each set of distinct
+// digits 1-9 adding up to it, as a bitmask with bit (d - 1) for digit d. Built once from
+// the 512 subsets of 1..9, so the solver prunes a cage with a few mask tests instead of
+// enumerating sums. A 3-cell cage of 7, for example, has the single combination {1, 2, 4}.
+public final class CageCombinations {
+    public static final int MAX_DIGIT = 9;
+    public static final int MAX_SUM = 45; // 1 + 2 + ... + 9
+
+    private static final int[] NONE = new int[0];
+    private static final int[][][] COMBINATIONS = new int[MAX_DIGIT + 1][MAX_SUM + 1][]; // [size][sum]
+    private static final int[][] UNION = new int[MAX_DIGIT + 1][MAX_SUM + 1];
+
+    static {
+        int[][] counts = new int[MAX_DIGIT + 1][MAX_SUM + 1];
+        for (int mask = 1; mask < 1 << MAX_DIGIT; mask++) {
+            counts[Integer.bitCount(mask)][sum(mask)]++;
+        }
+        for (int size = 0; size <= MAX_DIGIT; size++) {
+            for (int sum = 0; sum <= MAX_SUM; sum++) {
+                COMBINATIONS[size][sum] = counts[size][sum] == 0 ? NONE : new int[counts[size][sum]];
+                counts[size][sum] = 0;
+            }
+        }
+        for (int mask = 1; mask < 1 << MAX_DIGIT; mask++) {
+            int size = Integer.bitCount(mask);
+            int sum = sum(mask);
+            COMBINATIONS[size][sum][counts[size][sum]++] = mask;
+            UNION[size][sum] |= mask;
+        }
+    }
+
+    private CageCombinations() {
+    }
+
+    // Sum of the digits in a mask
+    public static int sum(int mask) {
+        int sum = 0;
+        for (; mask != 0; mask &= mask - 1) sum += CandidateGrid.lowestDigit(mask);
+        return sum;
+    }
+
+    // Every combination of size distinct digits adding up to sum; empty if there is none.
+    // The array is shared, do not modify it.
+    public static int[] get(int size, int sum) {
+        if (size < 0 || size > MAX_DIGIT || sum < 0 || sum > MAX_SUM) return NONE;
+        return COMBINATIONS[size][sum];
+    }
+
+    // Digits appearing in any of those combinations
+    public static int union(int size, int sum) {
+        if (size < 0 || size > MAX_DIGIT || sum < 0 || sum > MAX_SUM) return 0;
+        return UNION[size][sum];
+    }
+
+    // Digits that can still go into a cage whose empty cells need sum between them. A
+    // combination counts only if it avoids the digits already in the cage (used) and fits
+    // the candidates left in its empty cells (available). 0 means the cage is dead.
+    public static int candidates(int cells, int sum, int used, int available) {
+        if (cells < 0 || cells > MAX_DIGIT || sum < 0 || sum > MAX_SUM) return 0;
+        int allowed = available & ~used;
+        if ((UNION[cells][sum] & ~allowed) == 0) return UNION[cells][sum]; // Nothing ruled out
+        int result = 0;
+        for (int combination : COMBINATIONS[cells][sum]) {
+            if ((combination & ~allowed) == 0) result |= combination;
+        }
+        return result;
+    }
+}
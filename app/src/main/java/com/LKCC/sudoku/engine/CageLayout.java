@@ -0,0 +1,122 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// The cages of a Killer puzzle on the classic 9x9 grid: orthogonally connected groups of
+// cells whose digits are all different and add up to the cage's sum. Cages are numbered
+// in the order of their first (top-left-most) cell.
+public final class CageLayout {
+    public static final int DEFAULT_MAX_SIZE = 5;
+
+    private final int[] cageOf;    // [cell] -> cage
+    private final int[] sums;      // [cage] -> sum
+    private final int[][] cells;   // [cage] -> its cells, ascending
+
+    // Throws IllegalArgumentException unless every cell has a cage, cages are numbered
+    // 0..n-1 in order of their first cell, and each cage's sum is possible for its size
+    public CageLayout(int[] cageOf, int[] sums) {
+        if (cageOf.length != CandidateGrid.CELLS) throw new IllegalArgumentException("Need " + CandidateGrid.CELLS + " cages");
+        int[] counts = new int[sums.length];
+        int next = 0;
+        for (int cage : cageOf) {
+            if (cage < 0 || cage > next || cage >= sums.length) throw new IllegalArgumentException("Cage " + cage + " out of order");
+            if (cage == next) next++;
+            counts[cage]++;
+        }
+        if (next != sums.length) throw new IllegalArgumentException("Sums for " + sums.length + " cages, found " + next);
+        cells = new int[sums.length][];
+        for (int cage = 0; cage < sums.length; cage++) {
+            if (CageCombinations.get(counts[cage], sums[cage]).length == 0) {
+                throw new IllegalArgumentException("No " + counts[cage] + " digits add up to " + sums[cage]);
+            }
+            cells[cage] = new int[counts[cage]];
+            counts[cage] = 0;
+        }
+        for (int cell = 0; cell < cageOf.length; cell++) {
+            cells[cageOf[cell]][counts[cageOf[cell]]++] = cell;
+        }
+        this.cageOf = cageOf.clone();
+        this.sums = sums.clone();
+    }
+
+    // Random cages of 1 to maxSize cells over a solved grid, each grown from its first
+    // free cell through neighbours whose digit is not in the cage yet. Singles are rare:
+    // a cage only stays one cell when it has no free neighbour left.
+    public static CageLayout random(int[][] solution, Random random, int maxSize) {
+        int size = CandidateGrid.SIZE;
+        int[] cageOf = new int[CandidateGrid.CELLS];
+        Arrays.fill(cageOf, -1);
+        int[] sums = new int[CandidateGrid.CELLS];
+        int[] members = new int[maxSize];
+        int[] options = new int[maxSize * 4];
+        int cages = 0;
+        for (int start = 0; start < cageOf.length; start++) {
+            if (cageOf[start] >= 0) continue;
+            int target = Math.min(maxSize, 2 + random.nextInt(Math.max(1, maxSize - 1)));
+            int count = 0;
+            int used = 0;
+            members[count++] = start;
+            cageOf[start] = cages;
+            used |= CandidateGrid.bit(solution[start / size][start % size]);
+            while (count < target) {
+                // Free neighbours of the cage whose digit keeps the cage's digits distinct
+                int found = 0;
+                for (int i = 0; i < count; i++) {
+                    int cell = members[i];
+                    int row = cell / size;
+                    int col = cell % size;
+                    if (row > 0) found = addOption(cell - size, cageOf, used, solution, options, found);
+                    if (row < size - 1) found = addOption(cell + size, cageOf, used, solution, options, found);
+                    if (col > 0) found = addOption(cell - 1, cageOf, used, solution, options, found);
+                    if (col < size - 1) found = addOption(cell + 1, cageOf, used, solution, options, found);
+                }
+                if (found == 0) break;
+                int next = options[random.nextInt(found)];
+                members[count++] = next;
+                cageOf[next] = cages;
+                used |= CandidateGrid.bit(solution[next / size][next % size]);
+            }
+            sums[cages++] = CageCombinations.sum(used);
+        }
+        // Every cage starts at the lowest free cell, so the ids already follow first cells
+        return new CageLayout(cageOf, Arrays.copyOf(sums, cages));
+    }
+
+    private static int addOption(int cell, int[] cageOf, int used, int[][] solution, int[] options, int found) {
+        if (cageOf[cell] >= 0) return found;
+        if ((used & CandidateGrid.bit(solution[cell / CandidateGrid.SIZE][cell % CandidateGrid.SIZE])) != 0) return found;
+        options[found++] = cell;
+        return found;
+    }
+
+    public int getCageCount() { return sums.length; }
+    public int getCage(int cell) { return cageOf[cell]; }
+    public int getSum(int cage) { return sums[cage]; }
+    public int[] getCells(int cage) { return cells[cage]; }
+
+    // Cage of every cell, for saving
+    public int[] getCages() {
+        return cageOf.clone();
+    }
+
+    public int[] getSums() {
+        return sums.clone();
+    }
+
+    // Whether a finished board keeps every cage's digits distinct and adds up to its sum
+    public boolean isSatisfied(int[][] board) {
+        for (int cage = 0; cage < sums.length; cage++) {
+            int used = 0;
+            int sum = 0;
+            for (int cell : cells[cage]) {
+                int digit = board[cell / CandidateGrid.SIZE][cell % CandidateGrid.SIZE];
+                if (digit == 0 || (used & CandidateGrid.bit(digit)) != 0) return false;
+                used |= CandidateGrid.bit(digit);
+                sum += digit;
+            }
+            if (sum != sums[cage]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.concurrent.CancellationException;
+
+// Lets the caller stop a running generation, optionally with a time budget.
+// Cancelling aborts the work; running out of budget only asks it to wrap up early.
+public class CancellationToken {
+    private final long deadlineNanos;
+    private volatile boolean cancelled = false;
+
+    // A token without a time budget
+    public CancellationToken() {
+        this.deadlineNanos = Long.MAX_VALUE;
+    }
+
+    public CancellationToken(long budgetMillis) {
+        this.deadlineNanos = System.nanoTime() + budgetMillis * 1000000L;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("Puzzle generation cancelled");
+    }
+}
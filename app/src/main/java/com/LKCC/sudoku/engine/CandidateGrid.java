@@ -0,0 +1,161 @@
+package com.LKCC.sudoku.engine;
+
+// Constraint engine for a board of any GridShape (9x9 unless given).
+// Keeps an occupancy mask for every unit of the shape (rows, columns, boxes and any
+// variant units) so that "is this digit allowed" and "which digits are left for this
+// cell" cost one lookup per unit of the cell. Bit (d - 1) of a mask stands for digit d.
+public class CandidateGrid {
+    // The classic 9x9 board, which the rating, bank and canonical form code is written for
+    public static final int SIZE = 9;
+    public static final int CELLS = SIZE * SIZE;
+    public static final int ALL_DIGITS = 0x1FF;
+
+    private final GridShape shape;
+    private final int size;
+    private final int side;
+    private final int[] cells;
+    private final int[] unitMask;
+
+    // Per-unit digit counters. The player may place a wrong digit next to the same
+    // digit, so a unit can briefly hold duplicates; the mask bit is only cleared
+    // once the last copy of a digit leaves the unit.
+    private final int[] unitCount;
+
+    private int filled = 0;
+    private int conflicts = 0;
+
+    public CandidateGrid() {
+        this(GridShape.CLASSIC);
+    }
+
+    public CandidateGrid(int[][] board) {
+        this(GridShape.of(board.length));
+        load(board);
+    }
+
+    public CandidateGrid(GridShape shape) {
+        this.shape = shape;
+        this.size = shape.getSize();
+        this.side = shape.getSide();
+        cells = new int[shape.getCellCount()];
+        unitMask = new int[shape.getUnitCount()];
+        unitCount = new int[shape.getUnitCount() * (size + 1)];
+    }
+
+    public GridShape getShape() {
+        return shape;
+    }
+
+    // Box of a cell on the classic 9x9 board
+    public static int boxIndex(int row, int col) {
+        return (row / 3) * 3 + col / 3;
+    }
+
+    public static int bit(int digit) {
+        return 1 << (digit - 1);
+    }
+
+    // Lowest digit contained in a candidate mask, or 0 for an empty mask
+    public static int lowestDigit(int mask) {
+        return mask == 0 ? 0 : Integer.numberOfTrailingZeros(mask) + 1;
+    }
+
+    public void clear() {
+        for (int i = 0; i < cells.length; i++) cells[i] = 0;
+        for (int i = 0; i < unitMask.length; i++) unitMask[i] = 0;
+        for (int i = 0; i < unitCount.length; i++) unitCount[i] = 0;
+        filled = 0;
+        conflicts = 0;
+    }
+
+    public void load(int[][] board) {
+        clear();
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                if (board[r][c] != 0) place(r, c, board[r][c]);
+            }
+        }
+    }
+
+    public int get(int row, int col) {
+        return cells[row * side + col];
+    }
+
+    // Put a digit into a cell, replacing whatever was there before
+    public void place(int row, int col, int digit) {
+        int index = row * side + col;
+        if (cells[index] == digit) return;
+        if (cells[index] != 0) erase(row, col);
+        if (digit == 0) return;
+
+        cells[index] = digit;
+        filled++;
+        for (int unit : shape.getCellUnits(index)) {
+            unitMask[unit] |= add(unit, digit);
+        }
+    }
+
+    public void erase(int row, int col) {
+        int index = row * side + col;
+        int digit = cells[index];
+        if (digit == 0) return;
+
+        cells[index] = 0;
+        filled--;
+        for (int unit : shape.getCellUnits(index)) {
+            unitMask[unit] &= ~remove(unit, digit);
+        }
+    }
+
+    // Digits already used by the units of this cell
+    public int usedMask(int row, int col) {
+        int used = 0;
+        for (int unit : shape.getCellUnits(row * side + col)) {
+            used |= unitMask[unit];
+        }
+        return used;
+    }
+
+    // Digits that can still go into this cell without clashing with its peers
+    public int candidates(int row, int col) {
+        return ~usedMask(row, col) & shape.getAllDigits();
+    }
+
+    public boolean isAllowed(int row, int col, int digit) {
+        return (usedMask(row, col) & bit(digit)) == 0;
+    }
+
+    public int getFilledCount() {
+        return filled;
+    }
+
+    public boolean isFull() {
+        return filled == shape.getActiveCellCount();
+    }
+
+    // True when some unit holds the same digit twice
+    public boolean hasConflicts() {
+        return conflicts > 0;
+    }
+
+    // A full board without duplicates is a valid Sudoku solution
+    public boolean isSolved() {
+        return filled == shape.getActiveCellCount() && conflicts == 0;
+    }
+
+    // Returns the mask bit to set (0 if the digit was already present)
+    private int add(int unit, int digit) {
+        int count = ++unitCount[unit * (size + 1) + digit];
+        if (count == 1) return bit(digit);
+        conflicts++;
+        return 0;
+    }
+
+    // Returns the mask bit to clear (0 if another copy of the digit remains)
+    private int remove(int unit, int digit) {
+        int count = --unitCount[unit * (size + 1) + digit];
+        if (count == 0) return bit(digit);
+        conflicts--;
+        return 0;
+    }
+}
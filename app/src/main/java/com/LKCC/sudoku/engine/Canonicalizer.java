@@ -0,0 +1,245 @@
+package com.LKCC.sudoku.engine;
+
+// Reduces a puzzle to its canonical form: the lexicographically smallest 81-cell string
+// (empty cells as 0, read row by row) reachable with the transforms of SymmetryTransform.
+// Two puzzles have the same canonical form exactly when one is a disguised copy of the other.
+//
+// Digits are relabelled in order of first appearance, which is the smallest labelling for a
+// fixed cell order. The search tries both orientations and all 1296 column orders; for each
+// it builds the row order greedily, taking the smallest possible next row, branching only on
+// ties and dropping a branch as soon as its prefix is larger than the best form found so far.
+// Most column orders are rejected on the first row, so a puzzle takes a couple of
+// milliseconds. Meant for puzzles: solved or nearly empty grids tie on almost every row and
+// take far longer. invariant() is the cheap companion for a first check: a few microseconds.
+// Not thread safe; reuse one instance.
+public class Canonicalizer {
+    private static final int[][] COLUMN_ORDERS = buildColumnOrders();
+
+    private final int[] source = new int[81];    // Puzzle in the current orientation
+    private final int[] best = new int[81];
+    private boolean hasBest;
+    private int[] columns;
+    private final int[] rowOrder = new int[9];
+    private final boolean[] usedRow = new boolean[9];
+    private final int[][] labels = new int[10][10]; // Digit labels per depth, [depth][digit]
+    private final int[] nextLabel = new int[10];
+    private final int[] current = new int[81];      // Relabelled rows chosen so far
+    private final int[][] smallest = new int[9][9]; // Smallest next row, per depth
+    private final int[] candidateLabels = new int[10];
+    private final int[] compareScratch = new int[9];
+    private final int[] form = new int[81];
+    private final int[] lineCount = new int[18];    // Clues per row, then per column
+    private final int[] blockCount = new int[6];    // Clues per band, then per stack
+    private final int[] boxCount = new int[9];
+    private final int[] digitCount = new int[10];
+    private final int[][] digitInBlock = new int[6][10]; // Per band, then per stack
+
+    // Write the canonical form of board into out (81 cells, row-major)
+    public void canonicalize(int[][] board, int[] out) {
+        hasBest = false;
+        for (int transpose = 0; transpose < 2; transpose++) {
+            for (int cell = 0; cell < 81; cell++) {
+                source[cell] = transpose == 0 ? board[cell / 9][cell % 9] : board[cell % 9][cell / 9];
+            }
+            for (int[] order : COLUMN_ORDERS) {
+                columns = order;
+                for (int d = 0; d < 10; d++) labels[0][d] = 0;
+                nextLabel[0] = 1;
+                search(0, !hasBest);
+            }
+        }
+        System.arraycopy(best, 0, out, 0, 81);
+    }
+
+    // 128-bit fingerprint of the canonical form, as two longs in out[0], out[1]
+    public void fingerprint(int[][] board, long[] out) {
+        canonicalize(board, form);
+        long h1 = 0x9E3779B97F4A7C15L;
+        long h2 = 0xC2B2AE3D27D4EB4FL;
+        for (int cell = 0; cell < 81; cell++) {
+            h1 = mix(h1 ^ form[cell]);
+            h2 = mix(h2 + form[cell] * 0x165667B19E3779F9L);
+        }
+        out[0] = h1;
+        out[1] = h2;
+    }
+
+    // 128-bit key that is the same for every disguised copy of a puzzle, as two longs in
+    // out[0], out[1]. Each clue is described by what the transforms keep: the clue counts of
+    // its row, column, box, band and stack and of its digit overall and within its band and
+    // stack. The key sums those descriptions, once as read and once transposed, so distinct
+    // puzzles share a key only when they match clue for clue on all of them, which is rare.
+    // Use it to rule a puzzle out before paying for fingerprint().
+    public void invariant(int[][] board, long[] out) {
+        for (int i = 0; i < 18; i++) lineCount[i] = 0;
+        for (int i = 0; i < 9; i++) boxCount[i] = 0;
+        for (int i = 0; i < 6; i++) {
+            blockCount[i] = 0;
+            for (int d = 0; d < 10; d++) digitInBlock[i][d] = 0;
+        }
+        for (int d = 0; d < 10; d++) digitCount[d] = 0;
+        for (int r = 0; r < 9; r++) {
+            for (int c = 0; c < 9; c++) {
+                int digit = board[r][c];
+                if (digit == 0) continue;
+                lineCount[r]++;
+                lineCount[9 + c]++;
+                blockCount[r / 3]++;
+                blockCount[3 + c / 3]++;
+                boxCount[r / 3 * 3 + c / 3]++;
+                digitCount[digit]++;
+                digitInBlock[r / 3][digit]++;
+                digitInBlock[3 + c / 3][digit]++;
+            }
+        }
+        long read = 0;
+        long transposed = 0;
+        for (int r = 0; r < 9; r++) {
+            for (int c = 0; c < 9; c++) {
+                int digit = board[r][c];
+                if (digit == 0) continue;
+                long shared = boxCount[r / 3 * 3 + c / 3] | (long) digitCount[digit] << 8;
+                long byRow = lineCount[r] | lineCount[9 + c] << 8 | blockCount[r / 3] << 16 | blockCount[3 + c / 3] << 24
+                        | (long) digitInBlock[r / 3][digit] << 32 | (long) digitInBlock[3 + c / 3][digit] << 40;
+                long byColumn = lineCount[9 + c] | lineCount[r] << 8 | blockCount[3 + c / 3] << 16 | blockCount[r / 3] << 24
+                        | (long) digitInBlock[3 + c / 3][digit] << 32 | (long) digitInBlock[r / 3][digit] << 40;
+                read += mix(byRow ^ shared << 48);
+                transposed += mix(byColumn ^ shared << 48);
+            }
+        }
+        out[0] = read + transposed;
+        out[1] = mix(read ^ transposed);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    // Choose the row for output position slot. less is true once the rows chosen so far are
+    // already smaller than best, so only ties among the candidates matter from here on.
+    private void search(int slot, boolean less) {
+        if (slot == 9) {
+            System.arraycopy(current, 0, best, 0, 81);
+            hasBest = true;
+            return;
+        }
+        // A new band may start with any row of an unused band; otherwise stay in the band
+        int first, last;
+        if (slot % 3 == 0) {
+            first = 0;
+            last = 9;
+        } else {
+            first = rowOrder[slot - 1] / 3 * 3;
+            last = first + 3;
+        }
+
+        // Smallest row reachable from here. Bands already started are fully used, so the
+        // used flags alone keep whole bands together.
+        int[] target = smallest[slot];
+        boolean found = false;
+        for (int row = first; row < last; row++) {
+            if (usedRow[row]) continue;
+            if (!found || compareRow(row, slot, target) < 0) {
+                relabel(row, slot, target);
+                found = true;
+            }
+        }
+
+        if (!less) {
+            int base = slot * 9;
+            for (int c = 0; c < 9; c++) {
+                if (target[c] != best[base + c]) {
+                    if (target[c] > best[base + c]) return; // Worse than the best form
+                    less = true;
+                    break;
+                }
+            }
+        }
+
+        // Follow every row that produces that smallest row
+        for (int row = first; row < last; row++) {
+            if (usedRow[row]) continue;
+            if (compareRow(row, slot, target) != 0) continue;
+            usedRow[row] = true;
+            rowOrder[slot] = row;
+            int[] next = labels[slot + 1];
+            System.arraycopy(labels[slot], 0, next, 0, 10);
+            nextLabel[slot + 1] = nextLabel[slot];
+            int base = slot * 9;
+            for (int c = 0; c < 9; c++) {
+                int digit = source[row * 9 + columns[c]];
+                if (digit != 0 && next[digit] == 0) next[digit] = nextLabel[slot + 1]++;
+                current[base + c] = next[digit];
+            }
+            search(slot + 1, less);
+            usedRow[row] = false;
+            // The branch just searched may have become best, and then later ties have to beat it
+            if (less) less = isPrefixLess(slot + 1);
+        }
+    }
+
+    private boolean isPrefixLess(int rows) {
+        for (int i = 0; i < rows * 9; i++) {
+            if (current[i] != best[i]) return current[i] < best[i];
+        }
+        return false;
+    }
+
+    // The row as it would read at this slot, with new digits given the next free labels
+    private void relabel(int row, int slot, int[] out) {
+        int[] map = labels[slot];
+        int next = nextLabel[slot];
+        int seen = 0; // Bits of digits labelled within this row
+        int[] fresh = candidateLabels;
+        for (int c = 0; c < 9; c++) {
+            int digit = source[row * 9 + columns[c]];
+            if (digit == 0) {
+                out[c] = 0;
+            } else if (map[digit] != 0) {
+                out[c] = map[digit];
+            } else {
+                if ((seen & (1 << digit)) == 0) {
+                    seen |= 1 << digit;
+                    fresh[digit] = next++;
+                }
+                out[c] = fresh[digit];
+            }
+        }
+    }
+
+    // Compare the row as read at this slot with other: negative, zero or positive
+    private int compareRow(int row, int slot, int[] other) {
+        relabel(row, slot, compareScratch);
+        for (int c = 0; c < 9; c++) {
+            if (compareScratch[c] != other[c]) return compareScratch[c] - other[c];
+        }
+        return 0;
+    }
+
+    // Every column order that keeps stacks together: 6 stack orders x 6^3 orders within stacks
+    private static int[][] buildColumnOrders() {
+        int[][] perms = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        int[][] orders = new int[1296][9];
+        int n = 0;
+        for (int[] stacks : perms) {
+            for (int[] a : perms) {
+                for (int[] b : perms) {
+                    for (int[] c : perms) {
+                        int[][] inner = {a, b, c};
+                        for (int s = 0; s < 3; s++) {
+                            for (int k = 0; k < 3; k++) {
+                                orders[n][s * 3 + k] = stacks[s] * 3 + inner[s][k];
+                            }
+                        }
+                        n++;
+                    }
+                }
+            }
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,58 @@
+package com.LKCC.sudoku.engine;
+
+// Generation settings behind each game mode: clue count plus the range of the hardest
+// technique a puzzle may require. Shared by the app and the command-line tools so both
+// measure exactly what players get.
+public enum Difficulty {
+    EASY(50, Technique.NAKED_SINGLE, Technique.HIDDEN_SINGLE),
+    MEDIUM(40, Technique.HIDDEN_SINGLE, Technique.CLAIMING),
+    HARD(30, Technique.POINTING, Technique.SIMPLE_CHAIN),
+    // Below PuzzleGenerator.MINIMAL_SEARCH_BELOW clues the parallel minimal-puzzle search is used
+    EXPERT(23, Technique.POINTING, Technique.GUESSING);
+
+    // Killer cages stand in for this many clues, so Expert killers start without givens
+    public static final int KILLER_CAGE_CLUES = 23;
+    // How far above a difficulty's clue count a board may stay and still play as it
+    private static final float REACHED_SLACK = 1.1f;
+
+    private final int clues;
+    private final Technique easiest;
+    private final Technique hardest;
+
+    Difficulty(int clues, Technique easiest, Technique hardest) {
+        this.clues = clues;
+        this.easiest = easiest;
+        this.hardest = hardest;
+    }
+
+    public int getClues() {
+        return clues;
+    }
+
+    // Clue count for another grid shape: the same share of the cells as on 9x9
+    public int getClues(GridShape shape) {
+        if (shape == GridShape.CLASSIC) return clues;
+        if (shape.getVariant() == Variant.KILLER) return Math.max(0, clues - KILLER_CAGE_CLUES);
+        return Math.round(clues * shape.getActiveCellCount() / (float) CandidateGrid.CELLS);
+    }
+
+    // The hardest difficulty a board with this many clues plays as on a shape larger than
+    // 9x9: the first, from Expert down, whose clue count it is within 10% of. Generation
+    // there stops short of some clue counts (see PuzzleGenerator), so a board asked for as
+    // Expert can play as Hard or Medium. 9x9 boards are rated by technique instead.
+    public static Difficulty reached(GridShape shape, int clues) {
+        Difficulty[] all = values();
+        for (int i = all.length - 1; i > 0; i--) {
+            if (clues <= all[i].getClues(shape) * REACHED_SLACK) return all[i];
+        }
+        return EASY;
+    }
+
+    public Technique getEasiest() {
+        return easiest;
+    }
+
+    public Technique getHardest() {
+        return hardest;
+    }
+}
@@ -0,0 +1,37 @@
+package com.LKCC.sudoku.engine;
+
+// Result of rating a puzzle with LogicalSolver
+public class DifficultyRating {
+    private final int score;
+    private final Technique hardest;
+    private final int[] uses;
+
+    DifficultyRating(int score, Technique hardest, int[] uses) {
+        this.score = score;
+        this.hardest = hardest;
+        this.uses = uses;
+    }
+
+    // Sum of the technique weights of every step taken
+    public int getScore() {
+        return score;
+    }
+
+    // Hardest technique needed; GUESSING if logic alone could not finish the puzzle
+    public Technique getHardest() {
+        return hardest;
+    }
+
+    public boolean isSolvedLogically() {
+        return hardest != Technique.GUESSING;
+    }
+
+    // How many times a technique was applied
+    public int getUses(Technique technique) {
+        return uses[technique.ordinal()];
+    }
+
+    public String toString() {
+        return hardest + " (score " + score + ")";
+    }
+}
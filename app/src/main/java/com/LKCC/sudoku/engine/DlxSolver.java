@@ -0,0 +1,263 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.Random;
+
+// Knuth's Dancing Links over the exact-cover matrix of a Sudoku, 729 x 324 for 9x9.
+// Columns are the constraints (cell filled, and digit once in each unit of the shape: row,
+// column, box and any variant unit), rows are the (cell, digit) placements. Inactive cells
+// of a Samurai board get neither rows nor a column in the header list. The matrix is built
+// once per solver and the givens are covered/uncovered around each search, so one instance
+// can be reused.
+// Nodes are stored in parallel int arrays instead of objects to keep the search cache friendly.
+public class DlxSolver implements SudokuSolver {
+    private static final int ROOT = 0;
+
+    private final GridShape shape;
+    private final int digits;
+    private final int side;
+    private final int cells;
+    private final int columns;
+
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+    private final int[] column;
+    private final int[] rowOf;
+    private final int[] rowStart; // First node of each placement row
+    private final int[] size;
+    private final boolean[] covered;
+
+    private final Random random;
+    private final int[] chosen;
+    private final int[] givens;
+    private final int[][] work;
+
+    private SolutionVisitor visitor;
+    private int limit;
+    private int found;
+    private boolean stopped;
+    private long nodes;
+    private long budget; // Nodes left for the current search
+
+    public DlxSolver(Random random) {
+        this(GridShape.CLASSIC, random);
+    }
+
+    public DlxSolver(GridShape shape, Random random) {
+        this.shape = shape;
+        this.random = random;
+        digits = shape.getSize();
+        side = shape.getSide();
+        cells = shape.getCellCount();
+        // One column per cell, then one per (unit, digit)
+        columns = cells + shape.getUnitCount() * digits;
+        int nodes = 1 + columns;
+        for (int cell = 0; cell < cells; cell++) {
+            if (shape.isActive(cell)) nodes += digits * (1 + shape.getCellUnits(cell).length);
+        }
+        left = new int[nodes];
+        right = new int[nodes];
+        up = new int[nodes];
+        down = new int[nodes];
+        column = new int[nodes];
+        rowOf = new int[nodes];
+        rowStart = new int[cells * digits];
+        size = new int[columns + 1];
+        covered = new boolean[columns + 1];
+        chosen = new int[cells];
+        givens = new int[cells];
+        work = shape.newBoard();
+        build();
+    }
+
+    private void build() {
+        // Column headers form a circular list around the root
+        for (int c = 0; c <= columns; c++) {
+            left[c] = c == 0 ? columns : c - 1;
+            right[c] = c == columns ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            if (shape.isActive(cell)) continue;
+            right[left[1 + cell]] = right[1 + cell];
+            left[right[1 + cell]] = left[1 + cell];
+        }
+
+        int first = 1 + columns;
+        for (int r = 0; r < cells * digits; r++) {
+            int cell = r / digits;
+            int digit = r % digits;
+            if (!shape.isActive(cell)) continue;
+            int[] units = shape.getCellUnits(cell);
+            int width = 1 + units.length;
+            rowStart[r] = first;
+            for (int k = 0; k < width; k++) {
+                int node = first + k;
+                int c = k == 0 ? 1 + cell : 1 + cells + units[k - 1] * digits + digit;
+                column[node] = c;
+                rowOf[node] = r;
+                // Append to the bottom of the column
+                up[node] = up[c];
+                down[node] = c;
+                down[up[c]] = node;
+                up[c] = node;
+                size[c]++;
+                // Link into the row
+                left[node] = first + (k + width - 1) % width;
+                right[node] = first + (k + 1) % width;
+            }
+            first += width;
+        }
+    }
+
+    @Override
+    public boolean solve(int[][] board) {
+        final int[][] target = board;
+        start(board, 1, Long.MAX_VALUE, new SolutionVisitor() {
+            @Override
+            public boolean onSolution(int[][] solution) {
+                BacktrackingSolver.copy(solution, target);
+                return false;
+            }
+        });
+        return found > 0;
+    }
+
+    @Override
+    public int countSolutions(int[][] board, int limit) {
+        start(board, limit, Long.MAX_VALUE, null);
+        return found;
+    }
+
+    @Override
+    public int countSolutions(int[][] board, int limit, long maxNodes) {
+        start(board, limit, maxNodes, null);
+        return found < limit && budget == 0 ? -1 : found;
+    }
+
+    @Override
+    public void enumerate(int[][] board, SolutionVisitor visitor) {
+        start(board, Integer.MAX_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    private void start(int[][] board, int limit, long maxNodes, SolutionVisitor visitor) {
+        this.visitor = visitor;
+        this.limit = limit;
+        budget = maxNodes;
+        found = 0;
+        stopped = false;
+        if (limit <= 0) return;
+
+        BacktrackingSolver.copy(board, work);
+
+        // Select the rows of the givens; a clash means the board has no solution
+        int count = 0;
+        boolean valid = true;
+        for (int cell = 0; cell < cells && valid; cell++) {
+            int digit = board[cell / side][cell % side];
+            if (digit == 0) continue;
+            int node = rowStart[cell * digits + digit - 1];
+            if (covered[column[node]]) valid = false;
+            for (int j = right[node]; j != node; j = right[j]) {
+                if (covered[column[j]]) valid = false;
+            }
+            if (valid) {
+                selectRow(node);
+                givens[count++] = node;
+            }
+        }
+
+        if (valid) search(0);
+
+        // Put the matrix back the way it was for the next call
+        for (int i = count - 1; i >= 0; i--) {
+            unselectRow(givens[i]);
+        }
+    }
+
+    private void search(int depth) {
+        if (right[ROOT] == ROOT) {
+            for (int i = 0; i < depth; i++) {
+                int r = chosen[i];
+                int cell = r / digits;
+                work[cell / side][cell % side] = r % digits + 1;
+            }
+            found++;
+            if (visitor != null && !visitor.onSolution(work)) stopped = true;
+            if (found >= limit) stopped = true;
+            return;
+        }
+
+        // Branch on the constraint with the fewest remaining options
+        int best = right[ROOT];
+        for (int c = right[best]; c != ROOT; c = right[c]) {
+            if (size[c] < size[best]) {
+                best = c;
+                if (size[c] <= 1) break;
+            }
+        }
+        int options = size[best];
+        if (options == 0) return;
+
+        cover(best);
+        int node = down[best];
+        if (random != null && options > 1) {
+            for (int skip = random.nextInt(options); skip > 0; skip--) node = down[node];
+        }
+        for (int i = 0; i < options && !stopped; i++) {
+            if (node == best) node = down[node];
+            chosen[depth] = rowOf[node];
+            nodes++;
+            if (--budget == 0) stopped = true;
+            for (int j = right[node]; j != node; j = right[j]) cover(column[j]);
+            search(depth + 1);
+            for (int j = left[node]; j != node; j = left[j]) uncover(column[j]);
+            node = down[node];
+        }
+        uncover(best);
+    }
+
+    private void selectRow(int node) {
+        cover(column[node]);
+        for (int j = right[node]; j != node; j = right[j]) cover(column[j]);
+    }
+
+    private void unselectRow(int node) {
+        for (int j = left[node]; j != node; j = left[j]) uncover(column[j]);
+        uncover(column[node]);
+    }
+
+    private void cover(int c) {
+        covered[c] = true;
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                size[column[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                size[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+        covered[c] = false;
+    }
+}
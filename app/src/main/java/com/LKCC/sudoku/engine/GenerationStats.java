@@ -0,0 +1,82 @@
+package com.LKCC.sudoku.engine;
+
+// Cost counters for puzzle generation. One instance describes a single puzzle;
+// PuzzleGenerator also keeps a running total across everything it has generated.
+public class GenerationStats {
+    private int puzzles;
+    private int uniquenessChecks;
+    private int removalsAccepted;
+    private int removalsRejected;
+    private long searchNodes;
+    private long fillNanos;
+    private long reduceNanos;
+    private int ratings;
+    private long rateNanos;
+
+    void recordFill(long nanos, long nodes) {
+        fillNanos += nanos;
+        searchNodes += nodes;
+    }
+
+    void recordCheck(boolean unique, long nodes) {
+        uniquenessChecks++;
+        searchNodes += nodes;
+        if (unique) {
+            removalsAccepted++;
+        } else {
+            removalsRejected++;
+        }
+    }
+
+    void recordReduce(long nanos) {
+        reduceNanos += nanos;
+        puzzles++;
+    }
+
+    void recordSearch(long checks, long nodes, long nanos) {
+        uniquenessChecks += checks;
+        searchNodes += nodes;
+        reduceNanos += nanos;
+        puzzles++;
+    }
+
+    void recordRating(long nanos) {
+        ratings++;
+        rateNanos += nanos;
+    }
+
+    void add(GenerationStats other) {
+        puzzles += other.puzzles;
+        uniquenessChecks += other.uniquenessChecks;
+        removalsAccepted += other.removalsAccepted;
+        removalsRejected += other.removalsRejected;
+        searchNodes += other.searchNodes;
+        fillNanos += other.fillNanos;
+        reduceNanos += other.reduceNanos;
+        ratings += other.ratings;
+        rateNanos += other.rateNanos;
+    }
+
+    public int getPuzzles() { return puzzles; }
+    public int getUniquenessChecks() { return uniquenessChecks; }
+    public int getRemovalsAccepted() { return removalsAccepted; }
+    public int getRemovalsRejected() { return removalsRejected; }
+    public long getSearchNodes() { return searchNodes; }
+    public long getFillNanos() { return fillNanos; }
+    public long getReduceNanos() { return reduceNanos; }
+    public int getRatings() { return ratings; }
+    public long getRateNanos() { return rateNanos; }
+    public long getTotalNanos() { return fillNanos + reduceNanos + rateNanos; }
+
+    public String toString() {
+        return "puzzles=" + puzzles
+                + " checks=" + uniquenessChecks
+                + " accepted=" + removalsAccepted
+                + " rejected=" + removalsRejected
+                + " nodes=" + searchNodes
+                + " fillUs=" + fillNanos / 1000
+                + " reduceUs=" + reduceNanos / 1000
+                + " ratings=" + ratings
+                + " rateUs=" + rateNanos / 1000;
+    }
+}
@@ -0,0 +1,385 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Geometry and rules of a Sudoku grid: cells holding the digits 1..size, and the units
+// (groups of size cells that hold every digit once) of its Variant. Boards are side x side
+// with cells numbered row * side + col; side is size except for Samurai, whose five 9x9
+// grids sit on a 21x21 board where the cells outside them are inactive and in no unit.
+// Units are the rows, then the columns, then the boxes (or jigsaw regions) numbered left
+// to right and top to bottom, then the variant's extra units.
+// Everything is compiled once into per-cell unit and peer tables, which the solvers, the
+// generator and the board use instead of row/column/box arithmetic.
+// Up to 25 digits fit the int candidate masks, with bit (d - 1) standing for digit d.
+public final class GridShape {
+    public static final GridShape FOUR = regular(2, 2, Variant.STANDARD, null);
+    public static final GridShape SIX = regular(2, 3, Variant.STANDARD, null);
+    public static final GridShape CLASSIC = regular(3, 3, Variant.STANDARD, null);
+    public static final GridShape SIXTEEN = regular(4, 4, Variant.STANDARD, null);
+    public static final GridShape TWENTY_FIVE = regular(5, 5, Variant.STANDARD, null);
+
+    private static final int[] SIZES = {4, 6, 9, 16, 25};
+    private static final int[][] BOXES = {{2, 2}, {2, 3}, {3, 3}, {4, 4}, {5, 5}}; // rows x cols per size
+    // Samurai: top-left corners of the five 9x9 grids on the 21x21 board. The middle one
+    // shares a corner box with each of the others.
+    private static final int SAMURAI_SIDE = 21;
+    private static final int[][] SAMURAI_GRIDS = {{0, 0}, {0, 12}, {12, 0}, {12, 12}, {6, 6}};
+    // Built on first use, [variant][size index]
+    private static final GridShape[][] SHAPES = new GridShape[Variant.values().length][SIZES.length];
+
+    static {
+        GridShape[] standard = SHAPES[Variant.STANDARD.ordinal()];
+        standard[0] = FOUR;
+        standard[1] = SIX;
+        standard[2] = CLASSIC;
+        standard[3] = SIXTEEN;
+        standard[4] = TWENTY_FIVE;
+    }
+
+    private final int size;
+    private final int side;
+    private final int boxRows;
+    private final int boxCols;
+    private final Variant variant;
+    private final int cells;
+    private final int activeCells;
+    private final int allDigits;
+    private final int[] boxOf;          // [cell] -> box or jigsaw region, -1 if inactive
+    private final int[][] unitCells;    // [unit] -> its size cells
+    private final int baseUnits;        // Rows, columns and boxes; the extras follow
+    private final int[][] cellUnits;    // [cell] -> every unit containing it, rows first
+    private final int[][] peers;        // [cell] -> every other cell sharing a unit
+
+    private GridShape(int boxRows, int boxCols, int side, Variant variant, int[] boxOf, int[][] unitCells, int baseUnits) {
+        this.size = boxRows * boxCols;
+        this.side = side;
+        this.boxRows = boxRows;
+        this.boxCols = boxCols;
+        this.variant = variant;
+        this.cells = side * side;
+        this.allDigits = (1 << size) - 1;
+        this.boxOf = boxOf;
+        this.unitCells = unitCells;
+        this.baseUnits = baseUnits;
+
+        // Invert into the per-cell tables
+        int[] unitsPerCell = new int[cells];
+        for (int[] unit : unitCells) {
+            for (int cell : unit) unitsPerCell[cell]++;
+        }
+        cellUnits = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            cellUnits[cell] = new int[unitsPerCell[cell]];
+            unitsPerCell[cell] = 0;
+        }
+        for (int unit = 0; unit < unitCells.length; unit++) {
+            for (int cell : unitCells[unit]) cellUnits[cell][unitsPerCell[cell]++] = unit;
+        }
+        int active = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (cellUnits[cell].length > 0) active++;
+        }
+        activeCells = active;
+
+        peers = new int[cells][];
+        int[] seen = new int[cells];
+        int[] buffer = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int count = 0;
+            for (int unit : cellUnits[cell]) {
+                for (int other : unitCells[unit]) {
+                    if (other != cell && seen[other] != cell + 1) {
+                        seen[other] = cell + 1;
+                        buffer[count++] = other;
+                    }
+                }
+            }
+            peers[cell] = new int[count];
+            System.arraycopy(buffer, 0, peers[cell], 0, count);
+            Arrays.sort(peers[cell]);
+        }
+    }
+
+    // A size x size grid of boxRows x boxCols boxes, or of the given jigsaw regions
+    private static GridShape regular(int boxRows, int boxCols, Variant variant, int[] regions) {
+        int size = boxRows * boxCols;
+        int cells = size * size;
+        int[] boxOf = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            boxOf[cell] = regions != null ? regions[cell] : (row / boxRows) * boxRows + col / boxCols;
+        }
+
+        // Units as lists of cells: rows, columns, boxes, then the variant's extras
+        int[][] extra = extraUnits(boxRows, boxCols, variant);
+        int[][] unitCells = new int[size * 3 + extra.length][];
+        for (int i = 0; i < size; i++) {
+            unitCells[i] = new int[size];
+            unitCells[size + i] = new int[size];
+            unitCells[2 * size + i] = new int[size];
+        }
+        int[] filled = new int[size];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            unitCells[row][col] = cell;
+            unitCells[size + col][row] = cell;
+            unitCells[2 * size + boxOf[cell]][filled[boxOf[cell]]++] = cell;
+        }
+        for (int i = 0; i < extra.length; i++) unitCells[size * 3 + i] = extra[i];
+        return new GridShape(boxRows, boxCols, size, variant, boxOf, unitCells, size * 3);
+    }
+
+    // Samurai: the rows and columns of each 9x9 grid are units of their own, 45 of each,
+    // while the four corner boxes two grids share are one unit each, 41 boxes in all. A
+    // digit in a shared box is checked against both grids through that single unit.
+    private static GridShape samurai() {
+        int side = SAMURAI_SIDE;
+        int size = CandidateGrid.SIZE;
+        int grids = SAMURAI_GRIDS.length;
+        int[] boxOf = new int[side * side];
+        Arrays.fill(boxOf, -1);
+        int[] boxIds = new int[(side / 3) * (side / 3)];
+        Arrays.fill(boxIds, -1);
+        int[][] boxes = new int[grids * size][];
+        int boxCount = 0;
+        int[][] rows = new int[grids * size][size];
+        int[][] cols = new int[grids * size][size];
+        for (int g = 0; g < grids; g++) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    int row = SAMURAI_GRIDS[g][0] + i;
+                    int col = SAMURAI_GRIDS[g][1] + j;
+                    int cell = row * side + col;
+                    rows[g * size + i][j] = cell;
+                    cols[g * size + j][i] = cell;
+                    // Boxes line up with the 3x3 tiling of the whole board, so shared ones coincide
+                    int tile = (row / 3) * (side / 3) + col / 3;
+                    if (boxIds[tile] < 0) {
+                        boxIds[tile] = boxCount;
+                        boxes[boxCount++] = new int[size];
+                    }
+                    boxOf[cell] = boxIds[tile];
+                }
+            }
+        }
+        // Fill the boxes in cell order
+        int[] filled = new int[boxCount];
+        for (int cell = 0; cell < boxOf.length; cell++) {
+            if (boxOf[cell] >= 0) boxes[boxOf[cell]][filled[boxOf[cell]]++] = cell;
+        }
+
+        int[][] unitCells = new int[rows.length + cols.length + boxCount][];
+        System.arraycopy(rows, 0, unitCells, 0, rows.length);
+        System.arraycopy(cols, 0, unitCells, rows.length, cols.length);
+        System.arraycopy(boxes, 0, unitCells, rows.length + cols.length, boxCount);
+        return new GridShape(3, 3, side, Variant.SAMURAI, boxOf, unitCells, unitCells.length);
+    }
+
+    private static int[][] extraUnits(int boxRows, int boxCols, Variant variant) {
+        int size = boxRows * boxCols;
+        switch (variant) {
+            case DIAGONAL: {
+                int[][] diagonals = new int[2][size];
+                for (int i = 0; i < size; i++) {
+                    diagonals[0][i] = i * size + i;
+                    diagonals[1][i] = i * size + size - 1 - i;
+                }
+                return diagonals;
+            }
+            case WINDOKU: {
+                // One box-sized window in each gap between the regular boxes, one cell in from them
+                int per = boxRows - 1;
+                int[][] windows = new int[per * per][size];
+                for (int w = 0; w < windows.length; w++) {
+                    int top = 1 + (w / per) * (boxRows + 1);
+                    int left = 1 + (w % per) * (boxCols + 1);
+                    for (int i = 0; i < size; i++) {
+                        windows[w][i] = (top + i / boxCols) * size + left + i % boxCols;
+                    }
+                }
+                return windows;
+            }
+            default:
+                return new int[0][];
+        }
+    }
+
+    // The standard shape with this many digits: 4, 6 (2x3 boxes), 9, 16 or 25
+    public static GridShape of(int size) {
+        return of(size, Variant.STANDARD);
+    }
+
+    // The shape of a variant. For JIGSAW this is a template with the regular boxes as
+    // regions; PuzzleGenerator draws a new layout for every puzzle. SAMURAI takes size 9,
+    // the size of each of its grids.
+    public static GridShape of(int size, Variant variant) {
+        int index = indexOf(size);
+        if (!supports(variant, size)) {
+            throw new IllegalArgumentException("No " + size + "x" + size + " " + variant.getLabel() + " grid");
+        }
+        synchronized (SHAPES) {
+            GridShape shape = SHAPES[variant.ordinal()][index];
+            if (shape == null) {
+                shape = variant == Variant.SAMURAI ? samurai() : regular(BOXES[index][0], BOXES[index][1], variant, null);
+                SHAPES[variant.ordinal()][index] = shape;
+            }
+            return shape;
+        }
+    }
+
+    // Windoku is 9x9 only: the windows need square boxes of 3x3 and up, and on 16x16 and
+    // 25x25 the extra units leave random fills stuck in searches of minutes. Killer cages
+    // are built on the 1-9 combination table, and Samurai is made of 9x9 grids.
+    public static boolean supports(Variant variant, int size) {
+        indexOf(size);
+        return variant == Variant.STANDARD || variant == Variant.DIAGONAL || variant == Variant.JIGSAW || size == 9;
+    }
+
+    // A jigsaw grid with the given region (0..size-1) for every cell. Throws
+    // IllegalArgumentException unless every region has exactly size cells.
+    public static GridShape jigsaw(int size, int[] regions) {
+        int index = indexOf(size);
+        if (regions.length != size * size) throw new IllegalArgumentException("Need " + size * size + " regions");
+        int[] counts = new int[size];
+        for (int region : regions) {
+            if (region < 0 || region >= size) throw new IllegalArgumentException("Region " + region + " out of range");
+            counts[region]++;
+        }
+        for (int count : counts) {
+            if (count != size) throw new IllegalArgumentException("Regions must have " + size + " cells");
+        }
+        return regular(BOXES[index][0], BOXES[index][1], Variant.JIGSAW, regions.clone());
+    }
+
+    // A random jigsaw layout: starting from the regular boxes, neighbouring cells of two
+    // regions trade places as long as both regions stay connected. Not every layout can be
+    // filled; the generator draws another when it finds no solution.
+    public static GridShape randomJigsaw(int size, Random random) {
+        GridShape base = of(size);
+        int cells = size * size;
+        int[] regions = base.boxOf.clone();
+        int[] queue = new int[cells];
+        boolean[] visited = new boolean[cells];
+        for (int attempt = 0; attempt < cells * 8; attempt++) {
+            int a = random.nextInt(cells);
+            int b = neighbour(a, random.nextInt(4), size);
+            if (b < 0 || regions[a] == regions[b]) continue;
+            int regionA = regions[a];
+            regions[a] = regions[b];
+            regions[b] = regionA;
+            if (!isConnected(regions, a, size, queue, visited) || !isConnected(regions, b, size, queue, visited)) {
+                regions[b] = regions[a];
+                regions[a] = regionA;
+            }
+        }
+        return regular(base.boxRows, base.boxCols, Variant.JIGSAW, regions);
+    }
+
+    private static int neighbour(int cell, int direction, int size) {
+        int row = cell / size;
+        int col = cell % size;
+        switch (direction) {
+            case 0: return row > 0 ? cell - size : -1;
+            case 1: return row < size - 1 ? cell + size : -1;
+            case 2: return col > 0 ? cell - 1 : -1;
+            default: return col < size - 1 ? cell + 1 : -1;
+        }
+    }
+
+    // Whether the region of start is one orthogonally connected piece
+    private static boolean isConnected(int[] regions, int start, int size, int[] queue, boolean[] visited) {
+        Arrays.fill(visited, false);
+        int region = regions[start];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        visited[start] = true;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int direction = 0; direction < 4; direction++) {
+                int next = neighbour(cell, direction, size);
+                if (next >= 0 && !visited[next] && regions[next] == region) {
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return tail == size;
+    }
+
+    private static int indexOf(int size) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (SIZES[i] == size) return i;
+        }
+        throw new IllegalArgumentException("No " + size + "x" + size + " grid");
+    }
+
+    public int getSize() { return size; }
+    public int getSide() { return side; } // Rows and columns of the board
+    public int getBoxRows() { return boxRows; }
+    public int getBoxCols() { return boxCols; }
+    public Variant getVariant() { return variant; }
+    public int getCellCount() { return cells; } // side * side, inactive cells included
+    public int getActiveCellCount() { return activeCells; }
+    public int getUnitCount() { return unitCells.length; }
+    public int getAllDigits() { return allDigits; }
+
+    // Units beyond rows, columns and boxes: the diagonals or the Windoku windows
+    public int getExtraUnitCount() { return unitCells.length - baseUnits; }
+
+    // Whether a cell is part of the puzzle; only Samurai boards have cells that are not
+    public boolean isActive(int cell) {
+        return cellUnits[cell].length > 0;
+    }
+
+    public boolean hasInactiveCells() {
+        return activeCells < cells;
+    }
+
+    // Top-left corners of a Samurai board's 9x9 grids, the middle one last; null for other shapes
+    public int[][] getGridOrigins() {
+        if (variant != Variant.SAMURAI) return null;
+        int[][] origins = new int[SAMURAI_GRIDS.length][];
+        for (int g = 0; g < origins.length; g++) origins[g] = SAMURAI_GRIDS[g].clone();
+        return origins;
+    }
+
+    // Box, or jigsaw region, of a cell; -1 outside the grids of a Samurai board
+    public int boxIndex(int row, int col) {
+        return boxOf[row * side + col];
+    }
+
+    // Region of every cell, for saving a jigsaw layout
+    public int[] getRegions() {
+        return boxOf.clone();
+    }
+
+    // Whether the boxes are the regular boxRows x boxCols rectangles
+    public boolean hasRegularBoxes() {
+        return variant != Variant.JIGSAW;
+    }
+
+    public int[] getUnitCells(int unit) { return unitCells[unit]; }
+    public int[] getCellUnits(int cell) { return cellUnits[cell]; }
+    public int[] getPeers(int cell) { return peers[cell]; }
+
+    // Character shown for a digit: 1-9, then A, B, ... for the larger grids
+    public static char symbol(int digit) {
+        return digit <= 9 ? (char) ('0' + digit) : (char) ('A' + digit - 10);
+    }
+
+    // Fresh side x side board of empty cells
+    public int[][] newBoard() {
+        return new int[side][side];
+    }
+
+    @Override
+    public String toString() {
+        if (variant == Variant.SAMURAI) return variant.getLabel();
+        String name = size + "x" + size;
+        return variant == Variant.STANDARD ? name : name + " " + variant.getLabel();
+    }
+}
@@ -0,0 +1,181 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.Random;
+
+// Solver for Killer puzzles: the 9x9 rules plus the sums of a CageLayout. Depth-first
+// search on the cell with the fewest candidates, where a cell's candidates are its
+// row/column/box mask cut down to the digits of the cage combinations still possible
+// (CageCombinations). Dead cages and empty cells end a branch before any guess, which
+// keeps cage-only puzzles without a single given in the milliseconds.
+public class KillerSolver implements SudokuSolver {
+    private static final int SIZE = CandidateGrid.SIZE;
+    private static final int CELLS = CandidateGrid.CELLS;
+
+    private final CageLayout cages;
+    private final Random random;
+    private final CandidateGrid grid = new CandidateGrid();
+    private final int[][] work = new int[SIZE][SIZE];
+    private final int[] used;      // [cage] -> digits placed in it
+    private final int[] remaining; // [cage] -> sum its empty cells still need
+    private final int[] empty;     // [cage] -> empty cells
+    private final int[] cageMask;  // [cage] -> digits its empty cells can take, per node
+    private final int[][] order = new int[CELLS + 1][SIZE]; // Candidate order per search depth
+
+    private SolutionVisitor visitor;
+    private int limit;
+    private int found;
+    private boolean stopped;
+    private long nodes;
+    private long budget; // Nodes left for the current search
+
+    public KillerSolver(CageLayout cages, Random random) {
+        this.cages = cages;
+        this.random = random;
+        used = new int[cages.getCageCount()];
+        remaining = new int[cages.getCageCount()];
+        empty = new int[cages.getCageCount()];
+        cageMask = new int[cages.getCageCount()];
+    }
+
+    public CageLayout getCages() {
+        return cages;
+    }
+
+    @Override
+    public boolean solve(int[][] board) {
+        final int[][] target = board;
+        start(board, 1, Long.MAX_VALUE, new SolutionVisitor() {
+            @Override
+            public boolean onSolution(int[][] solution) {
+                BacktrackingSolver.copy(solution, target);
+                return false;
+            }
+        });
+        return found > 0;
+    }
+
+    @Override
+    public int countSolutions(int[][] board, int limit) {
+        start(board, limit, Long.MAX_VALUE, null);
+        return found;
+    }
+
+    @Override
+    public int countSolutions(int[][] board, int limit, long maxNodes) {
+        start(board, limit, maxNodes, null);
+        return found < limit && budget == 0 ? -1 : found;
+    }
+
+    @Override
+    public void enumerate(int[][] board, SolutionVisitor visitor) {
+        start(board, Integer.MAX_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    private void start(int[][] board, int limit, long maxNodes, SolutionVisitor visitor) {
+        this.visitor = visitor;
+        this.limit = limit;
+        budget = maxNodes;
+        found = 0;
+        stopped = false;
+        if (limit <= 0) return;
+
+        BacktrackingSolver.copy(board, work);
+        grid.load(work);
+        if (grid.hasConflicts()) return;
+        for (int cage = 0; cage < cages.getCageCount(); cage++) {
+            used[cage] = 0;
+            remaining[cage] = cages.getSum(cage);
+            empty[cage] = 0;
+            for (int cell : cages.getCells(cage)) {
+                int digit = work[cell / SIZE][cell % SIZE];
+                if (digit == 0) {
+                    empty[cage]++;
+                } else if ((used[cage] & CandidateGrid.bit(digit)) != 0) {
+                    return; // Givens repeat a digit inside the cage
+                } else {
+                    used[cage] |= CandidateGrid.bit(digit);
+                    remaining[cage] -= digit;
+                }
+            }
+            if (empty[cage] == 0 && remaining[cage] != 0) return;
+        }
+        search(0);
+    }
+
+    private void search(int depth) {
+        // What each unfinished cage can still take
+        for (int cage = 0; cage < cageMask.length; cage++) {
+            if (empty[cage] == 0) continue;
+            int available = 0;
+            for (int cell : cages.getCells(cage)) {
+                if (work[cell / SIZE][cell % SIZE] == 0) available |= grid.candidates(cell / SIZE, cell % SIZE);
+            }
+            cageMask[cage] = CageCombinations.candidates(empty[cage], remaining[cage], used[cage], available);
+            if (cageMask[cage] == 0) return;
+        }
+
+        // Most constrained empty cell
+        int best = -1;
+        int bestMask = 0;
+        int bestCount = SIZE + 1;
+        for (int cell = 0; cell < CELLS && bestCount > 1; cell++) {
+            int row = cell / SIZE;
+            int col = cell % SIZE;
+            if (work[row][col] != 0) continue;
+            int mask = grid.candidates(row, col) & cageMask[cages.getCage(cell)];
+            int count = Integer.bitCount(mask);
+            if (count == 0) return;
+            if (count < bestCount) {
+                best = cell;
+                bestMask = mask;
+                bestCount = count;
+            }
+        }
+
+        if (best < 0) {
+            // No empty cell left: the board is a solution
+            found++;
+            if (visitor != null && !visitor.onSolution(work)) stopped = true;
+            if (found >= limit) stopped = true;
+            return;
+        }
+
+        int[] numbers = order[depth];
+        int count = 0;
+        for (int mask = bestMask; mask != 0; mask &= mask - 1) {
+            numbers[count++] = CandidateGrid.lowestDigit(mask);
+        }
+        if (random != null) {
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = numbers[i];
+                numbers[i] = numbers[j];
+                numbers[j] = tmp;
+            }
+        }
+        int row = best / SIZE;
+        int col = best % SIZE;
+        int cage = cages.getCage(best);
+        for (int i = 0; i < count && !stopped; i++) {
+            int digit = numbers[i];
+            nodes++;
+            if (--budget == 0) stopped = true;
+            work[row][col] = digit;
+            grid.place(row, col, digit);
+            used[cage] |= CandidateGrid.bit(digit);
+            remaining[cage] -= digit;
+            empty[cage]--;
+            search(depth + 1);
+            empty[cage]++;
+            remaining[cage] += digit;
+            used[cage] &= ~CandidateGrid.bit(digit);
+            grid.erase(row, col);
+            work[row][col] = 0;
+        }
+    }
+}
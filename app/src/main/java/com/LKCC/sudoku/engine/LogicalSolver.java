@@ -0,0 +1,375 @@
+package com.LKCC.sudoku.engine;
+
+// Solves a puzzle the way a person would, to rate how hard it is.
+// Every step tries the techniques from cheapest to most expensive and applies the first
+// one that makes progress, so the hardest technique used is the hardest one the puzzle
+// really needs. Candidates are kept as 9-bit masks per cell and updated incrementally.
+// One instance can rate many puzzles; all working buffers are reused.
+public class LogicalSolver {
+    private static final Technique[] TECHNIQUES = Technique.values();
+
+    private final int[] values = new int[81];
+    private final int[] cand = new int[81];
+    private final int[] uses = new int[TECHNIQUES.length];
+    private final int[] subset = new int[9];
+    private final int[] lineMask = new int[9];
+    private final int[] positions = new int[9];
+    private final int[] color = new int[81];
+    private final int[] queue = new int[81];
+    private int empty;
+    private boolean broken;
+
+    public DifficultyRating rate(int[][] board) {
+        init(board);
+        int score = 0;
+        Technique hardest = Technique.NAKED_SINGLE;
+        while (empty > 0 && !broken) {
+            Technique used = step();
+            if (used == null) break;
+            uses[used.ordinal()]++;
+            score += used.getWeight();
+            if (used.ordinal() > hardest.ordinal()) hardest = used;
+        }
+        if (empty > 0 || broken) {
+            hardest = Technique.GUESSING;
+            uses[Technique.GUESSING.ordinal()]++;
+            score += Technique.GUESSING.getWeight();
+        }
+        return new DifficultyRating(score, hardest, uses.clone());
+    }
+
+    private void init(int[][] board) {
+        for (int i = 0; i < 81; i++) {
+            values[i] = 0;
+            cand[i] = CandidateGrid.ALL_DIGITS;
+        }
+        for (int i = 0; i < uses.length; i++) uses[i] = 0;
+        empty = 81;
+        broken = false;
+        for (int cell = 0; cell < 81; cell++) {
+            int digit = board[cell / 9][cell % 9];
+            if (digit == 0) continue;
+            if ((cand[cell] & CandidateGrid.bit(digit)) == 0) {
+                broken = true;
+                return;
+            }
+            place(cell, digit);
+        }
+    }
+
+    private Technique step() {
+        if (nakedSingle()) return Technique.NAKED_SINGLE;
+        if (hiddenSingle()) return Technique.HIDDEN_SINGLE;
+        if (pointing()) return Technique.POINTING;
+        if (claiming()) return Technique.CLAIMING;
+        if (nakedSubset(2)) return Technique.NAKED_PAIR;
+        if (hiddenSubset(2)) return Technique.HIDDEN_PAIR;
+        if (nakedSubset(3)) return Technique.NAKED_TRIPLE;
+        if (hiddenSubset(3)) return Technique.HIDDEN_TRIPLE;
+        if (fish(2)) return Technique.X_WING;
+        if (fish(3)) return Technique.SWORDFISH;
+        if (simpleChain()) return Technique.SIMPLE_CHAIN;
+        return null;
+    }
+
+    private void place(int cell, int digit) {
+        int bit = CandidateGrid.bit(digit);
+        values[cell] = digit;
+        cand[cell] = 0;
+        empty--;
+        for (int peer : Units.PEERS[cell]) {
+            if (values[peer] == 0) eliminate(peer, bit);
+        }
+    }
+
+    // Remove candidates from an empty cell; returns true if anything changed
+    private boolean eliminate(int cell, int bits) {
+        if (values[cell] != 0 || (cand[cell] & bits) == 0) return false;
+        cand[cell] &= ~bits;
+        if (cand[cell] == 0) broken = true;
+        return true;
+    }
+
+    private boolean nakedSingle() {
+        for (int cell = 0; cell < 81; cell++) {
+            int mask = cand[cell];
+            if (values[cell] == 0 && mask != 0 && (mask & (mask - 1)) == 0) {
+                place(cell, CandidateGrid.lowestDigit(mask));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hiddenSingle() {
+        for (int[] unit : Units.UNIT_CELLS) {
+            int once = 0, twice = 0;
+            for (int cell : unit) {
+                twice |= once & cand[cell];
+                once |= cand[cell];
+            }
+            int exactly = once & ~twice;
+            if (exactly == 0) continue;
+            int bit = exactly & -exactly;
+            for (int cell : unit) {
+                if ((cand[cell] & bit) != 0) {
+                    place(cell, CandidateGrid.lowestDigit(bit));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // A digit confined to one row or column inside a box cannot appear elsewhere on that line
+    private boolean pointing() {
+        for (int box = 18; box < 27; box++) {
+            for (int bit = 1; bit <= CandidateGrid.ALL_DIGITS; bit <<= 1) {
+                int rows = 0, cols = 0;
+                for (int cell : Units.UNIT_CELLS[box]) {
+                    if ((cand[cell] & bit) != 0) {
+                        rows |= 1 << (cell / 9);
+                        cols |= 1 << (cell % 9);
+                    }
+                }
+                if (rows == 0) continue;
+                boolean changed = false;
+                if (Integer.bitCount(rows) == 1) {
+                    changed = eliminateOutside(Integer.numberOfTrailingZeros(rows), box, bit);
+                } else if (Integer.bitCount(cols) == 1) {
+                    changed = eliminateOutside(9 + Integer.numberOfTrailingZeros(cols), box, bit);
+                }
+                if (changed) return true;
+            }
+        }
+        return false;
+    }
+
+    // A digit confined to one box inside a row or column cannot appear elsewhere in that box
+    private boolean claiming() {
+        for (int line = 0; line < 18; line++) {
+            for (int bit = 1; bit <= CandidateGrid.ALL_DIGITS; bit <<= 1) {
+                int boxes = 0;
+                for (int cell : Units.UNIT_CELLS[line]) {
+                    if ((cand[cell] & bit) != 0) boxes |= 1 << (Units.CELL_UNITS[cell][2] - 18);
+                }
+                if (Integer.bitCount(boxes) == 1
+                        && eliminateOutside(18 + Integer.numberOfTrailingZeros(boxes), line, bit)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Remove bits from the cells of unit that are not also in the keep unit
+    private boolean eliminateOutside(int unit, int keep, int bits) {
+        boolean changed = false;
+        for (int cell : Units.UNIT_CELLS[unit]) {
+            if (!inUnit(cell, keep)) changed |= eliminate(cell, bits);
+        }
+        return changed;
+    }
+
+    private static boolean inUnit(int cell, int unit) {
+        int[] units = Units.CELL_UNITS[cell];
+        return units[0] == unit || units[1] == unit || units[2] == unit;
+    }
+
+    // k cells of a unit that share only k candidates own those digits
+    private boolean nakedSubset(int k) {
+        for (int[] unit : Units.UNIT_CELLS) {
+            int n = 0;
+            for (int i = 0; i < 9; i++) {
+                int bits = Integer.bitCount(cand[unit[i]]);
+                if (bits >= 2 && bits <= k) subset[n++] = i;
+            }
+            if (n < k) continue;
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    if (k == 2) {
+                        if (applyNaked(unit, cand[unit[subset[a]]] | cand[unit[subset[b]]], 2)) return true;
+                        continue;
+                    }
+                    for (int c = b + 1; c < n; c++) {
+                        int union = cand[unit[subset[a]]] | cand[unit[subset[b]]] | cand[unit[subset[c]]];
+                        if (applyNaked(unit, union, 3)) return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean applyNaked(int[] unit, int union, int k) {
+        if (Integer.bitCount(union) != k) return false;
+        boolean changed = false;
+        for (int cell : unit) {
+            int mask = cand[cell];
+            // Cells whose candidates lie inside the union are the subset itself
+            if (mask != 0 && (mask & ~union) != 0) changed |= eliminate(cell, union);
+        }
+        return changed;
+    }
+
+    // k digits that only fit in the same k cells of a unit push out every other candidate there
+    private boolean hiddenSubset(int k) {
+        for (int[] unit : Units.UNIT_CELLS) {
+            int n = 0;
+            for (int d = 0; d < 9; d++) {
+                int pos = 0;
+                for (int i = 0; i < 9; i++) {
+                    if ((cand[unit[i]] & (1 << d)) != 0) pos |= 1 << i;
+                }
+                positions[d] = pos;
+                int count = Integer.bitCount(pos);
+                if (count >= 2 && count <= k) subset[n++] = d;
+            }
+            if (n < k) continue;
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    if (k == 2) {
+                        if (applyHidden(unit, positions[subset[a]] | positions[subset[b]],
+                                (1 << subset[a]) | (1 << subset[b]), 2)) return true;
+                        continue;
+                    }
+                    for (int c = b + 1; c < n; c++) {
+                        int cells = positions[subset[a]] | positions[subset[b]] | positions[subset[c]];
+                        int digits = (1 << subset[a]) | (1 << subset[b]) | (1 << subset[c]);
+                        if (applyHidden(unit, cells, digits, 3)) return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean applyHidden(int[] unit, int cells, int digits, int k) {
+        if (Integer.bitCount(cells) != k) return false;
+        boolean changed = false;
+        for (int i = 0; i < 9; i++) {
+            if ((cells & (1 << i)) != 0) changed |= eliminate(unit[i], ~digits & CandidateGrid.ALL_DIGITS);
+        }
+        return changed;
+    }
+
+    // X-Wing (k = 2) and Swordfish (k = 3), with rows and then columns as the base lines
+    private boolean fish(int k) {
+        for (int bit = 1; bit <= CandidateGrid.ALL_DIGITS; bit <<= 1) {
+            for (int base = 0; base < 18; base += 9) {
+                int n = 0;
+                for (int line = 0; line < 9; line++) {
+                    int mask = 0;
+                    int[] unit = Units.UNIT_CELLS[base + line];
+                    for (int i = 0; i < 9; i++) {
+                        if ((cand[unit[i]] & bit) != 0) mask |= 1 << i;
+                    }
+                    lineMask[line] = mask;
+                    int count = Integer.bitCount(mask);
+                    if (count >= 2 && count <= k) subset[n++] = line;
+                }
+                if (n < k) continue;
+                for (int a = 0; a < n; a++) {
+                    for (int b = a + 1; b < n; b++) {
+                        if (k == 2) {
+                            int lines = (1 << subset[a]) | (1 << subset[b]);
+                            if (applyFish(base, lines, lineMask[subset[a]] | lineMask[subset[b]], bit, 2)) return true;
+                            continue;
+                        }
+                        for (int c = b + 1; c < n; c++) {
+                            int lines = (1 << subset[a]) | (1 << subset[b]) | (1 << subset[c]);
+                            int cover = lineMask[subset[a]] | lineMask[subset[b]] | lineMask[subset[c]];
+                            if (applyFish(base, lines, cover, bit, 3)) return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean applyFish(int base, int lines, int cover, int bit, int k) {
+        if (Integer.bitCount(cover) != k) return false;
+        // Cover lines run the other way: columns for a row-based fish and vice versa
+        int crossBase = base == 0 ? 9 : 0;
+        boolean changed = false;
+        for (int i = 0; i < 9; i++) {
+            if ((cover & (1 << i)) == 0) continue;
+            int[] unit = Units.UNIT_CELLS[crossBase + i];
+            for (int j = 0; j < 9; j++) {
+                if ((lines & (1 << j)) == 0) changed |= eliminate(unit[j], bit);
+            }
+        }
+        return changed;
+    }
+
+    // Simple colouring: follow conjugate pairs (units with exactly two places for a digit)
+    // and alternate two colours along the chain. If two cells of one colour see each other
+    // that colour is false; a cell that sees both colours cannot hold the digit.
+    private boolean simpleChain() {
+        for (int bit = 1; bit <= CandidateGrid.ALL_DIGITS; bit <<= 1) {
+            for (int i = 0; i < 81; i++) color[i] = 0;
+            int nextColor = 1;
+            for (int start = 0; start < 81; start++) {
+                if (color[start] != 0 || (cand[start] & bit) == 0) continue;
+                int size = colorChain(start, bit, nextColor);
+                int on = nextColor, off = nextColor + 1;
+                nextColor += 2;
+                if (size < 2) continue;
+
+                // Colour wrap
+                for (int a = 0; a < size; a++) {
+                    for (int b = a + 1; b < size; b++) {
+                        int cellA = queue[a], cellB = queue[b];
+                        if (color[cellA] == color[cellB] && Units.sees(cellA, cellB)) {
+                            boolean changed = false;
+                            for (int c = 0; c < size; c++) {
+                                if (color[queue[c]] == color[cellA]) changed |= eliminate(queue[c], bit);
+                            }
+                            if (changed) return true;
+                        }
+                    }
+                }
+
+                // Colour trap
+                boolean changed = false;
+                for (int cell = 0; cell < 81; cell++) {
+                    if ((cand[cell] & bit) == 0 || color[cell] == on || color[cell] == off) continue;
+                    boolean seesOn = false, seesOff = false;
+                    for (int c = 0; c < size; c++) {
+                        if (Units.sees(cell, queue[c])) {
+                            if (color[queue[c]] == on) seesOn = true; else seesOff = true;
+                        }
+                    }
+                    if (seesOn && seesOff) changed |= eliminate(cell, bit);
+                }
+                if (changed) return true;
+            }
+        }
+        return false;
+    }
+
+    // Breadth-first colouring of one chain into queue; returns its length
+    private int colorChain(int start, int bit, int on) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        color[start] = on;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int unit : Units.CELL_UNITS[cell]) {
+                int other = -1, count = 0;
+                for (int peer : Units.UNIT_CELLS[unit]) {
+                    if ((cand[peer] & bit) != 0) {
+                        count++;
+                        if (peer != cell) other = peer;
+                    }
+                }
+                if (count == 2 && color[other] == 0) {
+                    color[other] = color[cell] == on ? on + 1 : on;
+                    queue[tail++] = other;
+                }
+            }
+        }
+        return tail;
+    }
+}
@@ -0,0 +1,266 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Searches for low-clue puzzles by exploring many clue removal orders in parallel.
+// Starting from a full solution grid, each node of the search is a set of clues that still
+// has a unique solution. A node tries removing its clues in random order and descends into
+// the first few removals that keep the puzzle unique, backtracking when it gets stuck.
+// The top levels of that tree are forked onto a ForkJoinPool, so every core follows its own
+// removal order. All tasks share a cache of clue sets already proven to have several
+// solutions, so a set reached again through a different order is not checked twice.
+public class MinimalPuzzleSearch {
+    public static final long DEFAULT_BUDGET_MS = 3000;
+    private static final int FORK_DEPTH = 3;    // Levels that run in parallel
+    private static final int BRANCHES = 3;      // Unique children explored per node
+    private static final int CACHE_LIMIT = 1 << 20;
+
+    private static ForkJoinPool sharedPool;
+
+    private final ForkJoinPool pool;
+    private final Set<ClueSet> nonUnique = ConcurrentHashMap.newKeySet();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+    private final ThreadLocal<Checker> checkers = new ThreadLocal<Checker>() {
+        @Override
+        protected Checker initialValue() {
+            return new Checker();
+        }
+    };
+
+    private int[][] solution;
+    private int target;
+    private CancellationToken token;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final AtomicInteger bestCount = new AtomicInteger();
+    private volatile ClueSet best;
+
+    public MinimalPuzzleSearch() {
+        this(sharedPool());
+    }
+
+    public MinimalPuzzleSearch(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // One pool sized to the number of cores, shared by every search
+    private static synchronized ForkJoinPool sharedPool() {
+        if (sharedPool == null) {
+            sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return sharedPool;
+    }
+
+    // Look for a puzzle with at most targetClues clues whose unique solution is the given grid.
+    // Returns the first one found, or the puzzle with the fewest clues reached when the
+    // token's budget runs out. Throws CancellationException if the token is cancelled.
+    public Puzzle search(int[][] solution, int targetClues, Random random, CancellationToken token) {
+        this.solution = solution;
+        this.target = targetClues;
+        this.token = token != null ? token : new CancellationToken(DEFAULT_BUDGET_MS);
+        nonUnique.clear();
+        checks.set(0);
+        cacheHits.set(0);
+        nodes.set(0);
+        done.set(false);
+        best = ClueSet.full();
+        bestCount.set(81);
+
+        long start = System.nanoTime();
+        pool.invoke(new RemovalTask(ClueSet.full(), new ClueSet(), random.nextLong(), 0));
+        this.token.throwIfCancelled();
+
+        GenerationStats stats = new GenerationStats();
+        stats.recordSearch(checks.get(), nodes.get(), System.nanoTime() - start);
+        int[][] board = new int[9][9];
+        ClueSet result = best;
+        for (int cell = 0; cell < 81; cell++) {
+            if (result.contains(cell)) board[cell / 9][cell % 9] = solution[cell / 9][cell % 9];
+        }
+        return new Puzzle(board, solution, stats);
+    }
+
+    // Uniqueness checks run by the last search
+    public long getUniquenessChecks() {
+        return checks.get();
+    }
+
+    // Checks the last search skipped because the shared cache already had the answer
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    private boolean shouldStop() {
+        if (done.get()) return true;
+        if (token.isCancelled() || token.isExpired()) {
+            done.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    private void offer(ClueSet clues) {
+        int count = clues.size();
+        synchronized (this) {
+            if (count < bestCount.get()) {
+                bestCount.set(count);
+                best = clues;
+            }
+        }
+        if (count <= target) done.set(true);
+    }
+
+    private boolean isUnique(ClueSet clues) {
+        if (nonUnique.contains(clues)) {
+            cacheHits.incrementAndGet();
+            return false;
+        }
+        checks.incrementAndGet();
+        Checker checker = checkers.get();
+        long before = checker.solver.getNodeCount();
+        boolean unique = checker.isUnique(clues, solution);
+        nodes.addAndGet(checker.solver.getNodeCount() - before);
+        if (!unique && nonUnique.size() < CACHE_LIMIT) nonUnique.add(clues);
+        return unique;
+    }
+
+    private class RemovalTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ClueSet clues;
+        private final ClueSet required; // Clues whose removal is known to break uniqueness here
+        private final long seed;
+        private final int depth;
+
+        RemovalTask(ClueSet clues, ClueSet required, long seed, int depth) {
+            this.clues = clues;
+            this.required = required;
+            this.seed = seed;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            explore(clues, required, new Random(seed), depth);
+        }
+
+        private void explore(ClueSet current, ClueSet fixed, Random random, int level) {
+            if (shouldStop()) return;
+            offer(current);
+            if (current.size() <= target) return;
+
+            int[] order = new int[81];
+            int count = 0;
+            for (int cell = 0; cell < 81; cell++) {
+                if (current.contains(cell) && !fixed.contains(cell)) order[count++] = cell;
+            }
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+
+            // Find the first few removals that keep the puzzle unique. A removal that breaks
+            // uniqueness here breaks it for every smaller clue set too, so it becomes fixed.
+            ClueSet required = fixed.copy();
+            List<ClueSet> children = new ArrayList<>(BRANCHES);
+            for (int i = 0; i < count && children.size() < BRANCHES; i++) {
+                if (shouldStop()) return;
+                ClueSet child = current.without(order[i]);
+                if (isUnique(child)) {
+                    children.add(child);
+                } else {
+                    required.add(order[i]);
+                }
+            }
+
+            if (level < FORK_DEPTH && children.size() > 1) {
+                List<RemovalTask> tasks = new ArrayList<>(children.size());
+                for (ClueSet child : children) {
+                    tasks.add(new RemovalTask(child, required, random.nextLong(), level + 1));
+                }
+                invokeAll(tasks);
+            } else {
+                for (ClueSet child : children) {
+                    explore(child, required, random, level + 1);
+                    if (shouldStop()) return;
+                }
+            }
+        }
+    }
+
+    // Per-thread solver and scratch board
+    private static class Checker {
+        final DlxSolver solver = new DlxSolver(null);
+        final int[][] board = new int[9][9];
+
+        boolean isUnique(ClueSet clues, int[][] solution) {
+            for (int cell = 0; cell < 81; cell++) {
+                board[cell / 9][cell % 9] = clues.contains(cell) ? solution[cell / 9][cell % 9] : 0;
+            }
+            return solver.countSolutions(board, 2) == 1;
+        }
+    }
+
+    // An 81-bit set of clue cells, usable as a hash key
+    static class ClueSet {
+        private long low;   // Cells 0-63
+        private long high;  // Cells 64-80
+
+        static ClueSet full() {
+            ClueSet set = new ClueSet();
+            set.low = -1L;
+            set.high = (1L << 17) - 1;
+            return set;
+        }
+
+        boolean contains(int cell) {
+            return cell < 64 ? (low & (1L << cell)) != 0 : (high & (1L << (cell - 64))) != 0;
+        }
+
+        void add(int cell) {
+            if (cell < 64) low |= 1L << cell; else high |= 1L << (cell - 64);
+        }
+
+        ClueSet without(int cell) {
+            ClueSet set = copy();
+            if (cell < 64) set.low &= ~(1L << cell); else set.high &= ~(1L << (cell - 64));
+            return set;
+        }
+
+        ClueSet copy() {
+            ClueSet set = new ClueSet();
+            set.low = low;
+            set.high = high;
+            return set;
+        }
+
+        int size() {
+            return Long.bitCount(low) + Long.bitCount(high);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ClueSet)) return false;
+            ClueSet other = (ClueSet) o;
+            return low == other.low && high == other.high;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = low * 0x9E3779B97F4A7C15L ^ high;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.LKCC.sudoku.engine;
+
+// A generated puzzle: the clue grid, its unique solution and what it cost to make.
+// Boards are size x size for any GridShape, 9x9 unless the generator was given another.
+public class Puzzle {
+    private final GridShape shape;
+    private final int[][] board;
+    private final int[][] solution;
+    private final GenerationStats stats;
+    private final DifficultyRating rating;
+    private final String id;
+    private final CageLayout cages;
+
+    public Puzzle(int[][] board, int[][] solution, GenerationStats stats) {
+        this(board, solution, stats, null);
+    }
+
+    public Puzzle(int[][] board, int[][] solution, GenerationStats stats, DifficultyRating rating) {
+        this(board, solution, stats, rating, null);
+    }
+
+    public Puzzle(int[][] board, int[][] solution, GenerationStats stats, DifficultyRating rating, String id) {
+        this(GridShape.of(board.length), board, solution, stats, rating, id);
+    }
+
+    public Puzzle(GridShape shape, int[][] board, int[][] solution, GenerationStats stats, DifficultyRating rating, String id) {
+        this(shape, board, solution, stats, rating, id, null);
+    }
+
+    public Puzzle(GridShape shape, int[][] board, int[][] solution, GenerationStats stats, DifficultyRating rating,
+                  String id, CageLayout cages) {
+        this.shape = shape;
+        this.board = board;
+        this.solution = solution;
+        this.stats = stats;
+        this.rating = rating;
+        this.id = id;
+        this.cages = cages;
+    }
+
+    public GridShape getShape() { return shape; } // Rules and, for jigsaw puzzles, the region layout
+    public int[][] getBoard() { return board; }
+    public int[][] getSolution() { return solution; }
+    public GenerationStats getStats() { return stats; }
+    public DifficultyRating getRating() { return rating; } // null if the puzzle was not rated
+    public String getId() { return id; } // PuzzleId to rebuild it with, null if not reproducible
+    public CageLayout getCages() { return cages; } // Killer cages, null for other variants
+
+    public int getClueCount() {
+        int count = 0;
+        for (int r = 0; r < board.length; r++) {
+            for (int c = 0; c < board.length; c++) {
+                if (board[r][c] != 0) count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,169 @@
+package com.LKCC.sudoku.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Read-only collection of pre-generated puzzles, built offline by the BuildPuzzleBank tool.
+// The file is read in place, typically through a memory-mapped buffer: a small header lists
+// the difficulty bands, then every puzzle is a fixed-size record of 4-bit cells, so a puzzle
+// is found by index in O(1) and only its 41 bytes are ever touched.
+//
+// Layout (big-endian):
+//   int magic "SDKB", int format, int band count
+//   per band: byte clues, byte easiest, byte hardest, byte 0, int first record, int record count
+//   records: 81 cells, two per byte (high nibble first), 0 for empty
+// Solutions are not stored; the unique solution is recomputed when a puzzle is loaded.
+public class PuzzleBank {
+    public static final int MAGIC = 0x53444B42; // "SDKB"
+    public static final int FORMAT = 1;
+    public static final int RECORD_BYTES = 41;
+    private static final int BAND_BYTES = 12;
+
+    private final ByteBuffer buffer;
+    private final int bandCount;
+    private final int recordsStart;
+    private final SudokuSolver solver = new DlxSolver(null);
+
+    // Wrap a buffer holding a whole bank file. Throws IllegalArgumentException if it is not one.
+    public PuzzleBank(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < 12 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IllegalArgumentException("Not a puzzle bank");
+        }
+        bandCount = buffer.getInt(8);
+        recordsStart = 12 + bandCount * BAND_BYTES;
+        if (bandCount < 0 || buffer.capacity() < recordsStart
+                || buffer.capacity() < recordsStart + (long) size() * RECORD_BYTES) {
+            throw new IllegalArgumentException("Truncated puzzle bank");
+        }
+    }
+
+    // Map a bank file read-only
+    public static PuzzleBank open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            return new PuzzleBank(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getBandCount() { return bandCount; }
+    public int getClues(int band) { return buffer.get(12 + band * BAND_BYTES); }
+    public Technique getEasiest(int band) { return Technique.values()[buffer.get(13 + band * BAND_BYTES)]; }
+    public Technique getHardest(int band) { return Technique.values()[buffer.get(14 + band * BAND_BYTES)]; }
+    public int getFirst(int band) { return buffer.getInt(16 + band * BAND_BYTES); }
+    public int getCount(int band) { return buffer.getInt(20 + band * BAND_BYTES); }
+
+    // Total number of puzzles over all bands
+    public int size() {
+        return bandCount == 0 ? 0 : getFirst(bandCount - 1) + getCount(bandCount - 1);
+    }
+
+    // Band generated with exactly these settings, or -1
+    public int findBand(int clues, Technique easiest, Technique hardest) {
+        for (int band = 0; band < bandCount; band++) {
+            if (getClues(band) == clues && getEasiest(band) == easiest && getHardest(band) == hardest) {
+                return band;
+            }
+        }
+        return -1;
+    }
+
+    // Decode the clues of a puzzle into board
+    public void read(int index, int[][] board) {
+        int offset = recordsStart + index * RECORD_BYTES;
+        for (int cell = 0; cell < 81; cell++) {
+            int packed = buffer.get(offset + (cell >> 1));
+            board[cell / 9][cell % 9] = (cell & 1) == 0 ? (packed >> 4) & 0xF : packed & 0xF;
+        }
+    }
+
+    // Load a puzzle with its solution. Synchronized: the bank shares one solver.
+    public synchronized Puzzle get(int index) {
+        int[][] board = new int[9][9];
+        int[][] solution = new int[9][9];
+        read(index, board);
+        BacktrackingSolver.copy(board, solution);
+        if (!solver.solve(solution)) {
+            throw new IllegalStateException("Puzzle " + index + " in bank has no solution");
+        }
+        return new Puzzle(board, solution, new GenerationStats());
+    }
+
+    // Random puzzle from the band matching these settings, or null if the bank has none
+    public Puzzle pick(int clues, Technique easiest, Technique hardest, Random random) {
+        int band = findBand(clues, easiest, hardest);
+        if (band < 0 || getCount(band) == 0) return null;
+        return get(getFirst(band) + random.nextInt(getCount(band)));
+    }
+
+    // Pack a board into a RECORD_BYTES record
+    public static void pack(int[][] board, byte[] record) {
+        Arrays.fill(record, 0, RECORD_BYTES, (byte) 0);
+        for (int cell = 0; cell < 81; cell++) {
+            int digit = board[cell / 9][cell % 9];
+            record[cell >> 1] |= (cell & 1) == 0 ? digit << 4 : digit;
+        }
+    }
+
+    // Streams puzzles into a bank file band by band, so a bank of any size can be written
+    // without holding it in memory. The header is filled in by close().
+    public static class Writer implements Closeable {
+        private final RandomAccessFile file;
+        private final int bandCount;
+        private final List<int[]> bands = new ArrayList<>(); // clues, easiest, hardest, first, count
+        private final byte[] record = new byte[RECORD_BYTES];
+        private final BufferedOutputStream out;
+        private int written;
+
+        // bandCount is the number of addBand calls that will follow
+        public Writer(File file, int bandCount) throws IOException {
+            this.file = new RandomAccessFile(file, "rw");
+            this.file.setLength(0);
+            this.bandCount = bandCount;
+            this.file.seek(12 + bandCount * BAND_BYTES);
+            this.out = new BufferedOutputStream(new FileOutputStream(this.file.getFD()), 1 << 16);
+        }
+
+        // Start a band; later add() calls go into it
+        public void addBand(int clues, Technique easiest, Technique hardest) {
+            if (bands.size() == bandCount) throw new IllegalStateException("More than " + bandCount + " bands");
+            bands.add(new int[] {clues, easiest.ordinal(), hardest.ordinal(), written, 0});
+        }
+
+        public void add(int[][] board) throws IOException {
+            pack(board, record);
+            out.write(record);
+            bands.get(bands.size() - 1)[4]++;
+            written++;
+        }
+
+        // Write the header and close the file
+        @Override
+        public void close() throws IOException {
+            try {
+                out.flush();
+                ByteBuffer header = ByteBuffer.allocate(12 + bandCount * BAND_BYTES);
+                header.putInt(MAGIC).putInt(FORMAT).putInt(bandCount);
+                for (int band = 0; band < bandCount; band++) {
+                    int[] settings = band < bands.size() ? bands.get(band) : new int[5];
+                    header.put((byte) settings[0]).put((byte) settings[1]).put((byte) settings[2]).put((byte) 0);
+                    header.putInt(settings[3]).putInt(settings[4]);
+                }
+                file.seek(0);
+                file.write(header.array());
+            } finally {
+                file.close();
+            }
+        }
+    }
+}
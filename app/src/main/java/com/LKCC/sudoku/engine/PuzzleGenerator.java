@@ -0,0 +1,291 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.Random;
+
+// Builds puzzles with exactly one solution.
+// A random full grid is produced first, then clues are removed one at a time in random
+// order. After each removal the solver counts solutions with a limit of 2, and the clue is
+// put back if a second solution appears. The solvers keep their search structures between
+// checks, so only the givens are re-applied per removal.
+// Grids of another GridShape go through the same fill and removal, but are neither rated
+// nor given an ID: LogicalSolver and PuzzleId only know the 9x9 board. Their removals are
+// first checked with singles, which is enough to prove uniqueness and keeps 16x16 and
+// 25x25 generation interactive; counts on 16x16 are capped at LARGE_CHECK_NODES. Both
+// limits keep clues that a full search might have removed: 16x16 boards stop at about 37%
+// clues and 25x25 ones at about 43%, short of the Expert (and on 25x25 the Hard) counts of
+// Difficulty, which reached() accounts for. Jigsaw generators draw a new region layout for every
+// puzzle, which the puzzle carries as its shape. Killer generators draw random cages over
+// the solution and check removals with KillerSolver, so the sums do part of the clues' work.
+// Samurai boards are one 369-cell shape whose shared boxes are single units, so the same
+// fill and removal treat the five grids as one puzzle.
+// Every puzzle is drawn from its own 64-bit seed. Apart from minimal searches and runs cut
+// short by a token's budget, the result depends only on the seed, the settings and VERSION,
+// so it gets a PuzzleId from which fromId rebuilds the identical grid.
+public class PuzzleGenerator {
+    // Bump whenever a change alters which puzzle a seed produces; older IDs are then rejected
+    public static final int VERSION = 1;
+    // How many candidate puzzles to try when looking for one in a difficulty band
+    public static final int MAX_RATING_ATTEMPTS = 50;
+    // Below this many clues random removal rarely gets there, so the parallel minimal search is used
+    public static final int MINIMAL_SEARCH_BELOW = 25;
+    // On grids with more cells than this a removal is only kept when singles alone solve the
+    // result: counting solutions of a sparse 25x25 grid can run for minutes
+    public static final int LOGIC_ONLY_ABOVE = 256;
+    // The same for the variants, whose extra units make counts on 16x16 as slow as on 25x25
+    public static final int VARIANT_LOGIC_ONLY_ABOVE = 81;
+    // Search nodes a solution count may take on grids larger than 9x9 before the clue is kept.
+    // Uncapped, the last removals of a 16x16 Hard board took seconds each.
+    public static final long LARGE_CHECK_NODES = 2000;
+
+    // Reports removal progress from the generating thread
+    public interface ProgressListener {
+        void onProgress(int removed, int toRemove);
+    }
+
+    private final GridShape shape;
+    private final SolverType type;
+    private final Random seeds;
+    private final Random random = new Random(); // Re-seeded per puzzle, shared with filler
+    private GridShape layout; // What puzzles are made on: shape, or the current jigsaw layout
+    private SudokuSolver filler;
+    private SudokuSolver counter;
+    private final int[] order;
+    private SinglesSolver singles; // Cheap uniqueness proof for the other shapes, null for 9x9
+    private SudokuSolver middleFiller; // Fills the middle grid of Samurai boards first, else null
+    private final GenerationStats totals = new GenerationStats();
+    private final LogicalSolver rater = new LogicalSolver();
+    private MinimalPuzzleSearch minimalSearch;
+
+    // Seeds for new puzzles are drawn from the given Random
+    public PuzzleGenerator(SolverType type, Random seeds) {
+        this(GridShape.CLASSIC, type, seeds);
+    }
+
+    public PuzzleGenerator(GridShape shape, SolverType type, Random seeds) {
+        this.shape = shape;
+        this.type = type;
+        this.seeds = seeds != null ? seeds : new Random();
+        this.order = new int[shape.getActiveCellCount()];
+        useLayout(shape);
+    }
+
+    private void useLayout(GridShape layout) {
+        this.layout = layout;
+        filler = type.create(layout, random);
+        counter = type.create(layout, null);
+        singles = layout != GridShape.CLASSIC ? new SinglesSolver(layout) : null;
+        middleFiller = layout.getVariant() == Variant.SAMURAI ? type.create(GridShape.CLASSIC, random) : null;
+    }
+
+    public GridShape getShape() {
+        return shape;
+    }
+
+    // Rebuild the puzzle an ID names. Throws IllegalArgumentException if the ID is malformed
+    // or comes from another generator version.
+    public static Puzzle fromId(String id) {
+        PuzzleId parsed = PuzzleId.decode(id);
+        if (parsed.getVersion() != VERSION) {
+            throw new IllegalArgumentException("Puzzle " + id + " was made by generator version " + parsed.getVersion());
+        }
+        return new PuzzleGenerator(parsed.getSolverType(), null).generate(parsed.getSeed(),
+                parsed.getClues(), parsed.getEasiest(), parsed.getHardest(), null, null);
+    }
+
+    // Generate a puzzle with the given number of clues. If no further clue can be removed
+    // without losing uniqueness the puzzle keeps more clues than asked for.
+    public Puzzle generate(int clues) {
+        return generate(clues, null, null);
+    }
+
+    // Same as generate(int), but stops with a CancellationException when the token is
+    // cancelled. When the token's budget runs out the removal phase ends early and the
+    // puzzle keeps the clues it still has, which is still a valid unique puzzle.
+    public Puzzle generate(int clues, CancellationToken token, ProgressListener listener) {
+        if (token != null) token.throwIfCancelled();
+        GenerationStats stats = new GenerationStats();
+        int[][] solution = shape.newBoard();
+        int[][] board = shape.newBoard();
+
+        long start;
+        if (shape.getVariant() == Variant.JIGSAW) {
+            // Redraw the regions until a layout can be filled
+            do {
+                if (token != null) token.throwIfCancelled();
+                useLayout(GridShape.randomJigsaw(shape.getSize(), random));
+            } while (!fill(solution, stats));
+        } else if (!fill(solution, stats)) {
+            throw new IllegalStateException(shape + " has no solution");
+        }
+
+        CageLayout cages = null;
+        if (shape.getVariant() == Variant.KILLER) {
+            cages = CageLayout.random(solution, random, CageLayout.DEFAULT_MAX_SIZE);
+            counter = new KillerSolver(cages, null);
+        }
+
+        start = System.nanoTime();
+        BacktrackingSolver.copy(solution, board);
+        reduce(board, clues, stats, token, listener);
+        stats.recordReduce(System.nanoTime() - start);
+
+        synchronized (totals) {
+            totals.add(stats);
+        }
+        return new Puzzle(layout, board, solution, stats, null, null, cages);
+    }
+
+    private boolean fill(int[][] solution, GenerationStats stats) {
+        long start = System.nanoTime();
+        long nodes = 0;
+        if (middleFiller != null) {
+            // An empty 369-cell fill can search for seconds. Once the middle grid is given, each
+            // corner grid only has its shared box filled, and every such 9x9 grid completes.
+            long middleNodes = middleFiller.getNodeCount();
+            int[][] middle = new int[9][9];
+            middleFiller.solve(middle);
+            nodes += middleFiller.getNodeCount() - middleNodes;
+            int[][] origins = layout.getGridOrigins();
+            int[] origin = origins[origins.length - 1];
+            for (int r = 0; r < 9; r++) {
+                System.arraycopy(middle[r], 0, solution[origin[0] + r], origin[1], 9);
+            }
+        }
+        long fillerNodes = filler.getNodeCount();
+        boolean filled = filler.solve(solution);
+        nodes += filler.getNodeCount() - fillerNodes;
+        stats.recordFill(System.nanoTime() - start, nodes);
+        return filled;
+    }
+
+    // Generate a puzzle whose hardest required technique lies between easiest and hardest
+    // (inclusive), as rated by LogicalSolver. Up to MAX_RATING_ATTEMPTS puzzles are tried;
+    // if none fits, or the token's budget runs out, the closest one is returned.
+    // The returned stats cover every attempt. Targets below MINIMAL_SEARCH_BELOW clues use
+    // generateMinimal, bounded by MinimalPuzzleSearch.DEFAULT_BUDGET_MS if there is no token.
+    public Puzzle generate(int clues, Technique easiest, Technique hardest,
+                           CancellationToken token, ProgressListener listener) {
+        return generate(seeds.nextLong(), clues, easiest, hardest, token, listener);
+    }
+
+    // Same as above with an explicit seed. The puzzle has an ID unless it came from the
+    // minimal search, whose parallel result depends on timing, or the token's budget ran out.
+    public Puzzle generate(long seed, int clues, Technique easiest, Technique hardest,
+                           CancellationToken token, ProgressListener listener) {
+        random.setSeed(seed);
+        if (shape != GridShape.CLASSIC) return generate(clues, token, listener);
+        boolean minimal = clues < MINIMAL_SEARCH_BELOW;
+        if (minimal && token == null) token = new CancellationToken(MinimalPuzzleSearch.DEFAULT_BUDGET_MS);
+
+        GenerationStats stats = new GenerationStats();
+        Puzzle best = null;
+        DifficultyRating bestRating = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int attempt = 0; attempt < MAX_RATING_ATTEMPTS; attempt++) {
+            Puzzle puzzle = minimal ? generateMinimal(clues, token) : generate(clues, token, listener);
+            stats.add(puzzle.getStats());
+
+            long start = System.nanoTime();
+            DifficultyRating rating = rater.rate(puzzle.getBoard());
+            long nanos = System.nanoTime() - start;
+            stats.recordRating(nanos);
+            synchronized (totals) {
+                totals.recordRating(nanos);
+            }
+
+            int level = rating.getHardest().ordinal();
+            int distance = Math.max(0, easiest.ordinal() - level) + Math.max(0, level - hardest.ordinal());
+            if (distance < bestDistance) {
+                best = puzzle;
+                bestRating = rating;
+                bestDistance = distance;
+            }
+            if (distance == 0 || (token != null && token.isExpired())) break;
+        }
+        String id = null;
+        if (!minimal && (token == null || !token.isExpired())) {
+            id = new PuzzleId(VERSION, type, clues, easiest, hardest, seed).encode();
+        }
+        return new Puzzle(best.getBoard(), best.getSolution(), stats, bestRating, id);
+    }
+
+    // Fill a random solution grid and let MinimalPuzzleSearch look for a puzzle with at most
+    // the given clues on all cores. Without a token the search gets
+    // MinimalPuzzleSearch.DEFAULT_BUDGET_MS.
+    public Puzzle generateMinimal(int clues, CancellationToken token) {
+        if (shape != GridShape.CLASSIC) throw new UnsupportedOperationException("Minimal search needs a 9x9 grid");
+        if (token != null) token.throwIfCancelled();
+        if (minimalSearch == null) minimalSearch = new MinimalPuzzleSearch();
+
+        long start = System.nanoTime();
+        long nodes = filler.getNodeCount();
+        int[][] solution = new int[9][9];
+        filler.solve(solution);
+        long fillNanos = System.nanoTime() - start;
+        long fillNodes = filler.getNodeCount() - nodes;
+
+        Puzzle puzzle = minimalSearch.search(solution, clues, random, token);
+        GenerationStats stats = puzzle.getStats();
+        stats.recordFill(fillNanos, fillNodes);
+        synchronized (totals) {
+            totals.add(stats);
+        }
+        return puzzle;
+    }
+
+    // Remove clues from a solved board while it keeps a single solution
+    private void reduce(int[][] board, int clues, GenerationStats stats,
+                        CancellationToken token, ProgressListener listener) {
+        int cells = 0;
+        int side = shape.getSide();
+        for (int cell = 0; cell < shape.getCellCount(); cell++) {
+            if (shape.isActive(cell)) order[cells++] = cell;
+        }
+        for (int i = cells - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        int remaining = cells;
+        for (int i = 0; i < cells && remaining > clues; i++) {
+            if (token != null) {
+                token.throwIfCancelled();
+                if (token.isExpired()) break;
+            }
+            int row = order[i] / side;
+            int col = order[i] % side;
+            int digit = board[row][col];
+            board[row][col] = 0;
+
+            long nodes = counter.getNodeCount();
+            boolean unique;
+            if (singles != null && singles.solves(board)) {
+                unique = true;
+            } else if (cells > (shape.getVariant() == Variant.STANDARD ? LOGIC_ONLY_ABOVE : VARIANT_LOGIC_ONLY_ABOVE)) {
+                unique = false;
+            } else if (cells > CandidateGrid.CELLS) {
+                unique = counter.countSolutions(board, 2, LARGE_CHECK_NODES) == 1; // -1 if cut short
+            } else {
+                unique = counter.countSolutions(board, 2) == 1;
+            }
+            stats.recordCheck(unique, counter.getNodeCount() - nodes);
+            if (unique) {
+                remaining--;
+                if (listener != null) listener.onProgress(cells - remaining, cells - clues);
+            } else {
+                board[row][col] = digit;
+            }
+        }
+    }
+
+    // Counters summed over every puzzle this generator has produced
+    public GenerationStats getTotalStats() {
+        GenerationStats copy = new GenerationStats();
+        synchronized (totals) {
+            copy.add(totals);
+        }
+        return copy;
+    }
+}
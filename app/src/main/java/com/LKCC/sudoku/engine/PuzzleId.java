@@ -0,0 +1,80 @@
+package com.LKCC.sudoku.engine;
+
+// Short, shareable name for a generated puzzle. Generation is a pure function of the
+// generator version, solver engine, clue target, technique range and 64-bit seed, so
+// these fields are all that is needed to recreate the exact same grid.
+// Encoded as 17 characters of Crockford base32 (85 bits, the top 21 holding the settings).
+public class PuzzleId {
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final int LENGTH = 17;
+
+    private final int version;
+    private final SolverType solverType;
+    private final int clues;
+    private final Technique easiest;
+    private final Technique hardest;
+    private final long seed;
+
+    public PuzzleId(int version, SolverType solverType, int clues, Technique easiest, Technique hardest, long seed) {
+        this.version = version;
+        this.solverType = solverType;
+        this.clues = clues;
+        this.easiest = easiest;
+        this.hardest = hardest;
+        this.seed = seed;
+    }
+
+    public int getVersion() { return version; }
+    public SolverType getSolverType() { return solverType; }
+    public int getClues() { return clues; }
+    public Technique getEasiest() { return easiest; }
+    public Technique getHardest() { return hardest; }
+    public long getSeed() { return seed; }
+
+    public String encode() {
+        // 21 header bits: version (5) | solver (1) | clues (7) | easiest (4) | hardest (4)
+        long header = ((long) (version & 0x1F) << 16)
+                | ((long) solverType.ordinal() << 15)
+                | ((long) (clues & 0x7F) << 8)
+                | ((long) easiest.ordinal() << 4)
+                | hardest.ordinal();
+        char[] out = new char[LENGTH];
+        long low = seed;
+        long high = header;
+        // Emit 5 bits at a time from the 85-bit value high:low, least significant first
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            out[i] = ALPHABET.charAt((int) (low & 0x1F));
+            low = (low >>> 5) | ((high & 0x1F) << 59);
+            high >>>= 5;
+        }
+        return new String(out);
+    }
+
+    // Parse an encoded ID. Throws IllegalArgumentException for malformed input.
+    public static PuzzleId decode(String text) {
+        if (text == null || text.length() != LENGTH) {
+            throw new IllegalArgumentException("Puzzle ID must have " + LENGTH + " characters: " + text);
+        }
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int value = ALPHABET.indexOf(Character.toUpperCase(text.charAt(i)));
+            if (value < 0) throw new IllegalArgumentException("Invalid puzzle ID character: " + text.charAt(i));
+            high = (high << 5) | (low >>> 59);
+            low = (low << 5) | value;
+        }
+        int solver = (int) ((high >>> 15) & 0x1);
+        int easiest = (int) ((high >>> 4) & 0xF);
+        int hardest = (int) (high & 0xF);
+        Technique[] techniques = Technique.values();
+        if (easiest >= techniques.length || hardest >= techniques.length) {
+            throw new IllegalArgumentException("Invalid puzzle ID: " + text);
+        }
+        return new PuzzleId((int) ((high >>> 16) & 0x1F), SolverType.values()[solver],
+                (int) ((high >>> 8) & 0x7F), techniques[easiest], techniques[hardest], low);
+    }
+
+    public String toString() {
+        return encode();
+    }
+}
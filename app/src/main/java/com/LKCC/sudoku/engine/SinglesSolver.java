@@ -0,0 +1,75 @@
+package com.LKCC.sudoku.engine;
+
+// Solves as far as naked and hidden singles go, on any GridShape. A board these two rules
+// fill completely has exactly one solution, so the generator uses this as a cheap
+// uniqueness proof on the large grids, where a solution count can search for minutes.
+final class SinglesSolver {
+    private final GridShape shape;
+    private final int side;
+    private final CandidateGrid grid;
+    private final int[][] work;
+
+    SinglesSolver(GridShape shape) {
+        this.shape = shape;
+        this.side = shape.getSide();
+        this.grid = new CandidateGrid(shape);
+        this.work = shape.newBoard();
+    }
+
+    // True if singles alone fill the whole board
+    boolean solves(int[][] board) {
+        BacktrackingSolver.copy(board, work);
+        grid.load(work);
+        if (grid.hasConflicts()) return false;
+
+        boolean progress = true;
+        while (progress && !grid.isFull()) {
+            progress = false;
+
+            // Naked singles: a cell with one candidate left
+            for (int cell = 0; cell < shape.getCellCount(); cell++) {
+                int row = cell / side;
+                int col = cell % side;
+                if (grid.get(row, col) != 0 || !shape.isActive(cell)) continue;
+                int candidates = grid.candidates(row, col);
+                if (candidates == 0) return false;
+                if ((candidates & (candidates - 1)) == 0) {
+                    grid.place(row, col, CandidateGrid.lowestDigit(candidates));
+                    progress = true;
+                }
+            }
+
+            // Hidden singles: a digit with one place left in a unit
+            for (int unit = 0; unit < shape.getUnitCount(); unit++) {
+                int[] cells = shape.getUnitCells(unit);
+                int once = 0;
+                int twice = 0;
+                int placed = 0;
+                for (int cell : cells) {
+                    int digit = grid.get(cell / side, cell % side);
+                    if (digit != 0) {
+                        placed |= CandidateGrid.bit(digit);
+                        continue;
+                    }
+                    int candidates = grid.candidates(cell / side, cell % side);
+                    twice |= once & candidates;
+                    once |= candidates;
+                }
+                if ((once | placed) != shape.getAllDigits()) return false; // A digit has nowhere to go
+                for (int hidden = once & ~twice & ~placed; hidden != 0; hidden &= hidden - 1) {
+                    int digit = CandidateGrid.lowestDigit(hidden);
+                    for (int cell : cells) {
+                        int row = cell / side;
+                        int col = cell % side;
+                        if (grid.get(row, col) == 0 && grid.isAllowed(row, col, digit)) {
+                            grid.place(row, col, digit);
+                            progress = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return grid.isSolved();
+    }
+}
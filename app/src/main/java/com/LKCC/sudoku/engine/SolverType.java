@@ -0,0 +1,26 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.Random;
+
+// The solving engines that can be selected for generation and checking
+public enum SolverType {
+    BACKTRACKING,
+    DLX;
+
+    // Create a solver. With a Random the search order is shuffled, which is what
+    // puzzle generation needs; pass null for a deterministic search.
+    public SudokuSolver create(Random random) {
+        return create(GridShape.CLASSIC, random);
+    }
+
+    // Same for boards of another shape
+    public SudokuSolver create(GridShape shape, Random random) {
+        switch (this) {
+            case BACKTRACKING:
+                return new BacktrackingSolver(shape, random);
+            case DLX:
+            default:
+                return new DlxSolver(shape, random);
+        }
+    }
+}
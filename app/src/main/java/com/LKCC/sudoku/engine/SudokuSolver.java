@@ -0,0 +1,28 @@
+package com.LKCC.sudoku.engine;
+
+// Common interface for the solving engines. Boards are size x size arrays of the GridShape the
+// solver was created for (9x9 by default) with 0 for empty cells.
+public interface SudokuSolver {
+
+    // Receives each solution found by enumerate(). The array is reused between calls,
+    // so copy it if it has to outlive the callback. Return false to stop the search.
+    interface SolutionVisitor {
+        boolean onSolution(int[][] solution);
+    }
+
+    // Fill the empty cells of the board in place. Returns false (board unchanged) if there is no solution.
+    boolean solve(int[][] board);
+
+    // Count solutions of the board, stopping as soon as limit solutions have been found
+    int countSolutions(int[][] board, int limit);
+
+    // Same, but give up after maxNodes search nodes and return -1 if by then fewer than
+    // limit solutions were found: the count is unknown
+    int countSolutions(int[][] board, int limit, long maxNodes);
+
+    // Report every solution of the board to the visitor until it asks to stop
+    void enumerate(int[][] board, SolutionVisitor visitor);
+
+    // Search nodes (placements tried) since the solver was created, for cost tracking
+    long getNodeCount();
+}
@@ -0,0 +1,76 @@
+package com.LKCC.sudoku.engine;
+
+import java.util.Random;
+
+// One element of the Sudoku symmetry group: a digit relabelling, a row order and a column
+// order that only swap lines within a band (stack) and swap whole bands (stacks), and an
+// optional transposition. Applying it to a puzzle and its solution gives another valid
+// puzzle with exactly one solution that needs the same hardest technique, so one verified
+// puzzle stands for about 10^12 different-looking ones. (LogicalSolver's score can move a
+// little, since which of several equal eliminations it finds first depends on cell order.)
+// randomize and apply do not allocate; reuse one instance for every puzzle.
+public class SymmetryTransform {
+    private final int[] digits = new int[10]; // digits[old] = new, digits[0] = 0
+    private final int[] rows = new int[9];    // Output row r is input row rows[r]
+    private final int[] cols = new int[9];    // Output column c is input column cols[c]
+    private boolean transpose;
+
+    public SymmetryTransform() {
+        reset();
+    }
+
+    // Back to the identity transform
+    public void reset() {
+        for (int d = 0; d < 10; d++) digits[d] = d;
+        for (int i = 0; i < 9; i++) {
+            rows[i] = i;
+            cols[i] = i;
+        }
+        transpose = false;
+    }
+
+    // Pick a uniformly random group element
+    public void randomize(Random random) {
+        for (int d = 0; d < 10; d++) digits[d] = d;
+        for (int d = 9; d > 1; d--) {
+            int j = 1 + random.nextInt(d);
+            int tmp = digits[d];
+            digits[d] = digits[j];
+            digits[j] = tmp;
+        }
+        shuffleLines(rows, random);
+        shuffleLines(cols, random);
+        transpose = random.nextBoolean();
+    }
+
+    // Random order of the three bands, then of the three lines inside each band
+    private static void shuffleLines(int[] lines, Random random) {
+        for (int i = 0; i < 9; i++) lines[i] = i;
+        for (int band = 2; band > 0; band--) {
+            int other = random.nextInt(band + 1);
+            for (int k = 0; k < 3; k++) {
+                int tmp = lines[band * 3 + k];
+                lines[band * 3 + k] = lines[other * 3 + k];
+                lines[other * 3 + k] = tmp;
+            }
+        }
+        for (int band = 0; band < 9; band += 3) {
+            for (int i = 2; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = lines[band + i];
+                lines[band + i] = lines[band + j];
+                lines[band + j] = tmp;
+            }
+        }
+    }
+
+    // Write the transformed board into to, which must not be the same array as from
+    public void apply(int[][] from, int[][] to) {
+        for (int r = 0; r < 9; r++) {
+            int source = rows[r];
+            for (int c = 0; c < 9; c++) {
+                to[r][c] = digits[transpose ? from[cols[c]][source] : from[source][cols[c]]];
+            }
+        }
+    }
+}
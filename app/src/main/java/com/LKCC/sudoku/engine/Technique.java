@@ -0,0 +1,29 @@
+package com.LKCC.sudoku.engine;
+
+// Human solving techniques, cheapest first. The weight is what one application adds
+// to a puzzle's difficulty score.
+public enum Technique {
+    NAKED_SINGLE(1),
+    HIDDEN_SINGLE(2),
+    POINTING(4),
+    CLAIMING(4),
+    NAKED_PAIR(6),
+    HIDDEN_PAIR(8),
+    NAKED_TRIPLE(10),
+    HIDDEN_TRIPLE(12),
+    X_WING(16),
+    SWORDFISH(24),
+    SIMPLE_CHAIN(30),
+    // Not a technique: the logical solver got stuck and the puzzle needs trial and error
+    GUESSING(50);
+
+    private final int weight;
+
+    Technique(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
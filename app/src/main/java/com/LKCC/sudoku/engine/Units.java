@@ -0,0 +1,40 @@
+package com.LKCC.sudoku.engine;
+
+// Precomputed cell/unit tables for the 9x9 board. Cells are numbered row * 9 + col.
+// Units 0-8 are rows, 9-17 columns and 18-26 boxes.
+final class Units {
+    static final int[][] UNIT_CELLS = new int[27][9];
+    static final int[][] CELL_UNITS = new int[81][3];
+    static final int[][] PEERS = new int[81][20];
+
+    static {
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                UNIT_CELLS[i][j] = i * 9 + j;
+                UNIT_CELLS[9 + i][j] = j * 9 + i;
+                UNIT_CELLS[18 + i][j] = ((i / 3) * 3 + j / 3) * 9 + (i % 3) * 3 + j % 3;
+            }
+        }
+        for (int cell = 0; cell < 81; cell++) {
+            int row = cell / 9;
+            int col = cell % 9;
+            CELL_UNITS[cell][0] = row;
+            CELL_UNITS[cell][1] = 9 + col;
+            CELL_UNITS[cell][2] = 18 + CandidateGrid.boxIndex(row, col);
+            int count = 0;
+            for (int other = 0; other < 81; other++) {
+                if (other != cell && sees(cell, other)) PEERS[cell][count++] = other;
+            }
+        }
+    }
+
+    private Units() {
+    }
+
+    static boolean sees(int a, int b) {
+        int rowA = a / 9, colA = a % 9;
+        int rowB = b / 9, colB = b % 9;
+        return rowA == rowB || colA == colB
+                || CandidateGrid.boxIndex(rowA, colA) == CandidateGrid.boxIndex(rowB, colB);
+    }
+}
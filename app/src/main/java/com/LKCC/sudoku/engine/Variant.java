@@ -0,0 +1,23 @@
+package com.LKCC.sudoku.engine;
+
+// Rule sets a grid can be played with. Each adds units, groups of cells that hold every
+// digit once, to the rows and columns; GridShape compiles them into its peer tables.
+// Killer adds cages instead, which every puzzle carries in its own CageLayout.
+public enum Variant {
+    STANDARD("Standard"),
+    DIAGONAL("Diagonal"),  // Both main diagonals are units too
+    WINDOKU("Windoku"),    // Four extra boxes between the regular ones; 9x9 only
+    JIGSAW("Jigsaw"),      // Irregular regions of size cells replace the boxes
+    KILLER("Killer"),      // Regular boxes plus cages with sums; 9x9 only
+    SAMURAI("Samurai");    // Five 9x9 grids overlapping at the corner boxes, 369 cells
+
+    private final String label;
+
+    Variant(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,156 @@
+package com.LKCC.sudoku;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.GridShape;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+import com.LKCC.sudoku.engine.Variant;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// SudokuBoardView.onDraw must not allocate once its caches are built: a tap redraws the
+// board, so garbage there would mean a collection every few taps. Each test draws a board
+// with entries, a mistake, pencil marks and a selection into a bitmap, a few times to build
+// the caches and warm up, then once more between reads of the JVM's per-thread allocation
+// counter. Robolectric's native graphics mode runs the real Canvas, so the drawing calls
+// themselves are counted too. The recorded variants draw into a RenderNode the way a
+// hardware-accelerated window does, where the board replays its per-cell nodes.
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 34)
+public class BoardDrawAllocationTest {
+    private static final int VIEW_SIZE = 1080;
+    private static final int WARM_UP_DRAWS = 20;
+    private static final long SEED = 20240521L;
+
+    @Test
+    public void classicBoard() {
+        assertDrawDoesNotAllocate(GridShape.CLASSIC); // Pencil marks from the atlas
+    }
+
+    @Test
+    public void killerBoard() {
+        assertDrawDoesNotAllocate(GridShape.of(9, Variant.KILLER)); // Cage outlines and sums
+    }
+
+    @Test
+    public void sixteenBoard() {
+        assertDrawDoesNotAllocate(GridShape.of(16, Variant.STANDARD)); // Pencil marks as text
+    }
+
+    @Test
+    public void classicBoardRecorded() {
+        assertRecordedDrawDoesNotAllocate(GridShape.CLASSIC);
+    }
+
+    @Test
+    public void sixteenBoardRecorded() {
+        assertRecordedDrawDoesNotAllocate(GridShape.of(16, Variant.STANDARD));
+    }
+
+    private static void assertDrawDoesNotAllocate(GridShape shape) {
+        SudokuBoardView view = boardView(shape);
+        Canvas canvas = new Canvas(Bitmap.createBitmap(VIEW_SIZE, VIEW_SIZE, Bitmap.Config.ARGB_8888));
+        for (int i = 0; i < WARM_UP_DRAWS; i++) view.onDraw(canvas); // Builds the caches
+        assertEquals("bytes allocated by onDraw", 0, allocatedBytes(view, canvas));
+    }
+
+    // Warms up tapping between two cells, so the nodes of the cells whose highlight changed
+    // are recorded again, then measures a frame that replays them. Recording takes a canvas
+    // from the platform's pool, but allocates under Robolectric's native graphics.
+    private static void assertRecordedDrawDoesNotAllocate(GridShape shape) {
+        SudokuBoardView view = boardView(shape);
+        RenderNode root = new RenderNode("board");
+        root.setPosition(0, 0, VIEW_SIZE, VIEW_SIZE);
+        for (int i = 0; i < WARM_UP_DRAWS; i++) {
+            tap(view, VIEW_SIZE * (i % 2 + 1) / 3f, VIEW_SIZE / 2f);
+            RecordingCanvas canvas = root.beginRecording();
+            view.onDraw(canvas);
+            root.endRecording();
+        }
+        RecordingCanvas canvas = root.beginRecording();
+        long allocated = allocatedBytes(view, canvas);
+        root.endRecording();
+        assertEquals("bytes allocated by onDraw", 0, allocated);
+    }
+
+    private static SudokuBoardView boardView(GridShape shape) {
+        Puzzle puzzle = new PuzzleGenerator(shape, SolverType.DLX, new Random(SEED))
+                .generate(Difficulty.EASY.getClues(shape));
+        SudokuBoardView view = new SudokuBoardView(RuntimeEnvironment.getApplication(), null);
+        view.layout(0, 0, VIEW_SIZE, VIEW_SIZE);
+        view.loadGameState(puzzle.getShape(), puzzle.getCages(), entries(puzzle), puzzle.getBoard(),
+                puzzle.getSolution(), pencilMarks(puzzle), null);
+        tap(view, VIEW_SIZE / 2f, VIEW_SIZE / 2f);
+        return view;
+    }
+
+    // The clues plus one correct and one wrong entry
+    private static int[][] entries(Puzzle puzzle) {
+        int[][] clues = puzzle.getBoard();
+        int[][] solution = puzzle.getSolution();
+        int size = puzzle.getShape().getSize();
+        int[][] board = new int[clues.length][];
+        for (int r = 0; r < clues.length; r++) board[r] = clues[r].clone();
+        int entered = 0;
+        for (int cell = 0; cell < board.length * board.length && entered < 2; cell++) {
+            int r = cell / board.length;
+            int c = cell % board.length;
+            if (board[r][c] != 0 || solution[r][c] == 0) continue;
+            board[r][c] = entered == 0 ? solution[r][c] : solution[r][c] % size + 1;
+            entered++;
+        }
+        return board;
+    }
+
+    // A different mix of marks in every empty cell
+    private static boolean[][][] pencilMarks(Puzzle puzzle) {
+        int side = puzzle.getBoard().length;
+        int size = puzzle.getShape().getSize();
+        boolean[][][] marks = new boolean[side][side][size + 1];
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                for (int n = 1; n <= size; n++) {
+                    marks[r][c][n] = (r * 7 + c * 3 + n) % 3 != 0;
+                }
+            }
+        }
+        return marks;
+    }
+
+    private static void tap(SudokuBoardView view, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+        MotionEvent up = MotionEvent.obtain(now, now, MotionEvent.ACTION_UP, x, y, 0);
+        view.onTouchEvent(down);
+        view.onTouchEvent(up);
+        down.recycle();
+        up.recycle();
+    }
+
+    private static long allocatedBytes(SudokuBoardView view, Canvas canvas) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        view.onDraw(canvas);
+        return threads.getThreadAllocatedBytes(id) - before;
+    }
+}
@@ -0,0 +1,31 @@
+// JMH microbenchmarks for the board and engine hot paths, run on the desktop JVM:
+//   ./gradlew :benchmarks:jmh
+// The gc profiler adds gc.alloc.rate.norm, the bytes allocated per operation.
+// Results are written to benchmarks/build/results/jmh/results.json.
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/LKCC/sudoku/engine/**")
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
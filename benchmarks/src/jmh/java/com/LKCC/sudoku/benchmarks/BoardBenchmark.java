@@ -0,0 +1,98 @@
+package com.LKCC.sudoku.benchmarks;
+
+import com.LKCC.sudoku.engine.BoardState;
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.Puzzle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// The per-move work of SudokuBoardView, run on the BoardState it delegates to. Each
+// benchmark leaves the state as it found it, so every invocation measures the same board.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardBenchmark {
+    @Param({"EASY", "HARD"})
+    public Difficulty difficulty;
+
+    private final BoardState state = new BoardState();
+    private final BoardState solved = new BoardState();
+    // A given cell and number to erase and put back
+    private int eraseRow;
+    private int eraseCol;
+    private int erased;
+
+    @Setup
+    public void setUp() {
+        Puzzle puzzle = Inputs.puzzles(difficulty)[0];
+        state.load(puzzle.getBoard(), puzzle.getBoard(), puzzle.getSolution(), null);
+        solved.load(puzzle.getSolution(), puzzle.getBoard(), puzzle.getSolution(), null);
+        state.fillAllPencilMarks();
+
+        // The first empty cell, to be filled and erased again
+        int[][] board = state.getBoard();
+        for (int cell = 0; cell < 81 && erased == 0; cell++) {
+            if (board[cell / 9][cell % 9] == 0) {
+                eraseRow = cell / 9;
+                eraseCol = cell % 9;
+                erased = puzzle.getSolution()[eraseRow][eraseCol];
+            }
+        }
+    }
+
+    // Every cell and number, as the old isSafe scans did
+    @Benchmark
+    public void isNumberAllowed(Blackhole blackhole) {
+        for (int r = 0; r < 9; r++) {
+            for (int c = 0; c < 9; c++) {
+                for (int n = 1; n <= 9; n++) {
+                    blackhole.consume(state.isNumberAllowed(r, c, n));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] getAllRemainingCounts() {
+        return state.getAllRemainingCounts();
+    }
+
+    @Benchmark
+    public boolean[][][] fillAllPencilMarks() {
+        state.fillAllPencilMarks();
+        return state.getPencilMarks();
+    }
+
+    // Place a number and erase it again, with the pencil mark updates of both moves
+    @Benchmark
+    public boolean[][][] placeAndErase() {
+        state.place(eraseRow, eraseCol, erased);
+        state.clearPencilMarks(eraseRow, eraseCol);
+        state.updatePencilMarksAfterNumberPlacement(eraseRow, eraseCol, erased);
+        state.place(eraseRow, eraseCol, 0);
+        state.updatePencilMarksAfterErase(eraseRow, eraseCol, erased);
+        return state.getPencilMarks();
+    }
+
+    // The check after every move: usually a board with empty cells
+    @Benchmark
+    public boolean isCompleteAndCorrectPartial() {
+        return state.isCompleteAndCorrect();
+    }
+
+    // The worst case, a full board that has to be compared cell by cell
+    @Benchmark
+    public boolean isCompleteAndCorrectSolved() {
+        return solved.isCompleteAndCorrect();
+    }
+}
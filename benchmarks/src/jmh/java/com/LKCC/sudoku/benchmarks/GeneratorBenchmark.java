@@ -0,0 +1,54 @@
+package com.LKCC.sudoku.benchmarks;
+
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Whole-puzzle generation as the board requests it. Seeds come from a fixed sequence, so
+// runs replay the same workload. Expert is left out: its minimal search runs against a time
+// budget and would measure the budget.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GeneratorBenchmark {
+    @Param({"EASY", "MEDIUM", "HARD"})
+    public Difficulty difficulty;
+
+    @Param({"DLX", "BACKTRACKING"})
+    public SolverType solverType;
+
+    private PuzzleGenerator generator;
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        generator = new PuzzleGenerator(solverType, new Random(Inputs.SEED));
+        seed = Inputs.SEED;
+    }
+
+    // Fill plus clue removal only, the old removeNumbers path
+    @Benchmark
+    public Puzzle removeClues() {
+        return generator.generate(difficulty.getClues());
+    }
+
+    // Full path of generateRandomSudoku: removal, rating and retries until the band fits
+    @Benchmark
+    public Puzzle generateRated() {
+        return generator.generate(seed++, difficulty.getClues(),
+                difficulty.getEasiest(), difficulty.getHardest(), null, null);
+    }
+}
@@ -0,0 +1,47 @@
+package com.LKCC.sudoku.benchmarks;
+
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.GridShape;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Generation cost per grid size, at each difficulty's share of clues. Anything a player
+// starts has to stay well under MainActivity's two second generation budget.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GridSizeBenchmark {
+    @Param({"4", "6", "16", "25"})
+    public int size;
+
+    @Param({"EASY", "HARD", "EXPERT"})
+    public Difficulty difficulty;
+
+    private PuzzleGenerator generator;
+    private int clues;
+
+    @Setup
+    public void setUp() {
+        GridShape shape = GridShape.of(size);
+        generator = new PuzzleGenerator(shape, SolverType.DLX, new Random(Inputs.SEED));
+        clues = difficulty.getClues(shape);
+    }
+
+    @Benchmark
+    public Puzzle generate() {
+        return generator.generate(clues);
+    }
+}
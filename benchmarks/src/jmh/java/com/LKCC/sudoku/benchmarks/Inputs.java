@@ -0,0 +1,26 @@
+package com.LKCC.sudoku.benchmarks;
+
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+
+// Fixed-seed inputs, so every run and every machine measures the same puzzles
+final class Inputs {
+    static final long SEED = 20240601L;
+    static final int PUZZLES = 64;
+
+    private Inputs() {
+    }
+
+    // PUZZLES puzzles of a difficulty, generated from consecutive seeds
+    static Puzzle[] puzzles(Difficulty difficulty) {
+        PuzzleGenerator generator = new PuzzleGenerator(SolverType.DLX, null);
+        Puzzle[] puzzles = new Puzzle[PUZZLES];
+        for (int i = 0; i < PUZZLES; i++) {
+            puzzles[i] = generator.generate(SEED + i, difficulty.getClues(),
+                    difficulty.getEasiest(), difficulty.getHardest(), null, null);
+        }
+        return puzzles;
+    }
+}
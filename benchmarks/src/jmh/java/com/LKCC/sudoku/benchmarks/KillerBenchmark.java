@@ -0,0 +1,65 @@
+package com.LKCC.sudoku.benchmarks;
+
+import com.LKCC.sudoku.engine.CageLayout;
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.GridShape;
+import com.LKCC.sudoku.engine.KillerSolver;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+import com.LKCC.sudoku.engine.SudokuSolver;
+import com.LKCC.sudoku.engine.Variant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Killer generation, and the uniqueness check on a cage layout without any givens, which
+// is where the cage combination table has to keep the search small
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KillerBenchmark {
+    @Param({"EASY", "HARD", "EXPERT"})
+    public Difficulty difficulty;
+
+    private PuzzleGenerator generator;
+    private int clues;
+    private KillerSolver[] solvers;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        GridShape shape = GridShape.of(9, Variant.KILLER);
+        generator = new PuzzleGenerator(shape, SolverType.DLX, new Random(Inputs.SEED));
+        clues = difficulty.getClues(shape);
+
+        Random random = new Random(Inputs.SEED);
+        SudokuSolver filler = SolverType.DLX.create(random);
+        solvers = new KillerSolver[Inputs.PUZZLES];
+        for (int i = 0; i < solvers.length; i++) {
+            int[][] solution = new int[9][9];
+            filler.solve(solution);
+            solvers[i] = new KillerSolver(CageLayout.random(solution, random, CageLayout.DEFAULT_MAX_SIZE), null);
+        }
+    }
+
+    @Benchmark
+    public Puzzle generate() {
+        return generator.generate(clues);
+    }
+
+    @Benchmark
+    public int countCagesOnly() {
+        KillerSolver solver = solvers[next++ % solvers.length];
+        return solver.countSolutions(new int[9][9], 2);
+    }
+}
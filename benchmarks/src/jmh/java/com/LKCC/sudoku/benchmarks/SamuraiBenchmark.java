@@ -0,0 +1,45 @@
+package com.LKCC.sudoku.benchmarks;
+
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.GridShape;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+import com.LKCC.sudoku.engine.Variant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Samurai generation: a fill of all five overlapping grids through one exact cover, then
+// clue removal over 369 cells
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SamuraiBenchmark {
+    @Param({"EASY", "HARD", "EXPERT"})
+    public Difficulty difficulty;
+
+    private PuzzleGenerator generator;
+    private int clues;
+
+    @Setup
+    public void setUp() {
+        GridShape shape = GridShape.of(9, Variant.SAMURAI);
+        generator = new PuzzleGenerator(shape, SolverType.DLX, new Random(Inputs.SEED));
+        clues = difficulty.getClues(shape);
+    }
+
+    @Benchmark
+    public Puzzle generate() {
+        return generator.generate(clues);
+    }
+}
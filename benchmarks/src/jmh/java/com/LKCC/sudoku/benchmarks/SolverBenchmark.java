@@ -0,0 +1,64 @@
+package com.LKCC.sudoku.benchmarks;
+
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.SolverType;
+import com.LKCC.sudoku.engine.SudokuSolver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Solver hot paths: filling an empty grid (what fillBoard did), solving a puzzle, and the
+// solution count with limit 2 that every clue removal runs (the core of removeNumbers).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SolverBenchmark {
+    @Param({"DLX", "BACKTRACKING"})
+    public SolverType solverType;
+
+    @Param({"EASY", "HARD"})
+    public Difficulty difficulty;
+
+    private SudokuSolver filler;
+    private SudokuSolver solver;
+    private Puzzle[] puzzles;
+    private final int[][] work = new int[9][9];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        filler = solverType.create(new Random(Inputs.SEED));
+        solver = solverType.create(null);
+        puzzles = Inputs.puzzles(difficulty);
+    }
+
+    @Benchmark
+    public int[][] fillEmptyGrid() {
+        for (int[] row : work) Arrays.fill(row, 0);
+        filler.solve(work);
+        return work;
+    }
+
+    @Benchmark
+    public boolean solvePuzzle() {
+        int[][] board = puzzles[next++ & (Inputs.PUZZLES - 1)].getBoard();
+        for (int r = 0; r < 9; r++) System.arraycopy(board[r], 0, work[r], 0, 9);
+        return solver.solve(work);
+    }
+
+    @Benchmark
+    public int countSolutionsToTwo() {
+        return solver.countSolutions(puzzles[next++ & (Inputs.PUZZLES - 1)].getBoard(), 2);
+    }
+}
@@ -23,3 +23,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Sudokugame"
 include(":app")
+include(":tools")
+include(":benchmarks")
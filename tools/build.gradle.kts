@@ -0,0 +1,54 @@
+// Command-line tools that run on the desktop JVM. They share the pure-Java puzzle engine
+// with the app by compiling its sources directly.
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/LKCC/sudoku/engine/**", "com/LKCC/sudoku/tools/**")
+        }
+    }
+}
+
+application {
+    mainClass.set("com.LKCC.sudoku.tools.BuildPuzzleBank")
+}
+
+// Regenerate the puzzle bank shipped with the app:
+//   ./gradlew :tools:buildPuzzleBank [-Pcount=500]
+tasks.register<JavaExec>("buildPuzzleBank") {
+    group = "build"
+    description = "Generates app/src/main/assets/puzzles.bank"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.LKCC.sudoku.tools.BuildPuzzleBank")
+    args("--count", (project.findProperty("count") ?: "500").toString(),
+        rootProject.file("app/src/main/assets/puzzles.bank").path)
+}
+
+// Solve an 81-character-per-line puzzle file:
+//   ./gradlew :tools:batchSolve -Pargs="--threads 8 puzzles.txt solutions.txt"
+tasks.register<JavaExec>("batchSolve") {
+    group = "verification"
+    description = "Solves a puzzle file on all cores and reports throughput and latency"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.LKCC.sudoku.tools.BatchSolve")
+    args((project.findProperty("args") ?: "").toString().split(" ").filter { it.isNotEmpty() })
+}
+
+// Generate puzzles per difficulty and print their clue, time and search-node distributions:
+//   ./gradlew :tools:batchGenerate -Pargs="--count 1000 --text puzzles.txt --bank puzzles.bank"
+tasks.register<JavaExec>("batchGenerate") {
+    group = "verification"
+    description = "Generates puzzles for every difficulty on all cores and reports what they cost"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.LKCC.sudoku.tools.BatchGenerate")
+    args((project.findProperty("args") ?: "").toString().split(" ").filter { it.isNotEmpty() })
+}
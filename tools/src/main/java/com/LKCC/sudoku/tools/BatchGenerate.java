@@ -0,0 +1,220 @@
+package com.LKCC.sudoku.tools;
+
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.LatencyHistogram;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleBank;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+import com.LKCC.sudoku.engine.Technique;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Generates puzzles with the same settings and code path as the app and reports what they
+// look like and what they cost.
+//
+//   BatchGenerate [--count N] [--threads T] [--seed S] [--difficulty EASY,HARD,...]
+//                 [--text out.txt] [--bank out.bank]
+//
+// Every difficulty gets N puzzles, made on T threads with PuzzleGenerator.generate exactly
+// as SudokuBoardView.generateRandomSudoku calls it. Puzzle i of a difficulty always comes
+// from the same seed, so a run can be repeated. Puzzles are streamed as they finish to an
+// 81-character-per-line text file and/or a PuzzleBank file (one band per difficulty), so
+// nothing is kept in memory. At the end the distribution of clue counts, generation times,
+// solver search nodes and hardest techniques is printed for each difficulty.
+public class BatchGenerate {
+
+    public static void main(String[] args) throws Exception {
+        int count = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        List<Difficulty> difficulties = new ArrayList<>();
+        String textPath = null;
+        String bankPath = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--count":
+                    count = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--difficulty":
+                    for (String name : args[++i].split(",")) difficulties.add(Difficulty.valueOf(name.trim()));
+                    break;
+                case "--text":
+                    textPath = args[++i];
+                    break;
+                case "--bank":
+                    bankPath = args[++i];
+                    break;
+                default:
+                    System.err.println("usage: BatchGenerate [--count N] [--threads T] [--seed S] [--difficulty EASY,HARD,...] [--text out.txt] [--bank out.bank]");
+                    System.exit(2);
+            }
+        }
+        if (difficulties.isEmpty()) {
+            for (Difficulty difficulty : Difficulty.values()) difficulties.add(difficulty);
+        }
+
+        Writer text = textPath == null ? null : new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(textPath), StandardCharsets.US_ASCII), 1 << 16);
+        PuzzleBank.Writer bank = bankPath == null ? null : new PuzzleBank.Writer(new File(bankPath), difficulties.size());
+        try {
+            for (Difficulty difficulty : difficulties) {
+                if (bank != null) bank.addBand(difficulty.getClues(), difficulty.getEasiest(), difficulty.getHardest());
+                Summary summary = run(difficulty, count, threads, seed, text, bank);
+                System.out.println(summary);
+            }
+        } finally {
+            if (text != null) text.close();
+            if (bank != null) bank.close();
+        }
+    }
+
+    // Generate count puzzles of one difficulty, writing each as soon as it is ready
+    static Summary run(final Difficulty difficulty, final int count, int threads, final long seed,
+                       Writer text, PuzzleBank.Writer bank) throws IOException, InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+        final BlockingQueue<Result> results = new ArrayBlockingQueue<>(threads * 4);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    PuzzleGenerator generator = new PuzzleGenerator(SolverType.DLX, null);
+                    try {
+                        for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                            Result result = new Result();
+                            try {
+                                long start = System.nanoTime();
+                                result.puzzle = generator.generate(seedOf(seed, difficulty, i), difficulty.getClues(),
+                                        difficulty.getEasiest(), difficulty.getHardest(), null, null);
+                                result.nanos = System.nanoTime() - start;
+                            } catch (RuntimeException e) {
+                                result.error = e;
+                            }
+                            results.put(result);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "BatchGenerate-" + t);
+            workers[t].setDaemon(true);
+            workers[t].start();
+        }
+
+        Summary summary = new Summary(difficulty);
+        long start = System.nanoTime();
+        char[] line = new char[81];
+        for (int n = 0; n < count; n++) {
+            Result result = results.take();
+            if (result.error != null) throw result.error;
+            Puzzle puzzle = result.puzzle;
+            summary.add(puzzle, result.nanos);
+            if (text != null) {
+                int[][] board = puzzle.getBoard();
+                for (int cell = 0; cell < 81; cell++) line[cell] = (char) ('0' + board[cell / 9][cell % 9]);
+                text.write(line);
+                text.write('\n');
+            }
+            if (bank != null) bank.add(puzzle.getBoard());
+        }
+        summary.nanos = System.nanoTime() - start;
+        for (Thread worker : workers) worker.join();
+        return summary;
+    }
+
+    // Seed of puzzle i, independent of which thread happens to make it
+    private static long seedOf(long seed, Difficulty difficulty, int index) {
+        long h = seed * 0x9E3779B97F4A7C15L + difficulty.ordinal() * 0xC2B2AE3D27D4EB4FL + index;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+
+    private static class Result {
+        Puzzle puzzle;
+        long nanos;
+        RuntimeException error;
+    }
+
+    static class Summary {
+        private static final int BAR_WIDTH = 40;
+
+        final Difficulty difficulty;
+        final int[] clues = new int[82];
+        final int[] hardest = new int[Technique.values().length];
+        final LatencyHistogram times = new LatencyHistogram();
+        final LatencyHistogram nodes = new LatencyHistogram();
+        long nanos;
+
+        Summary(Difficulty difficulty) {
+            this.difficulty = difficulty;
+        }
+
+        void add(Puzzle puzzle, long generationNanos) {
+            clues[puzzle.getClueCount()]++;
+            times.record(generationNanos);
+            nodes.record(puzzle.getStats().getSearchNodes());
+            if (puzzle.getRating() != null) hardest[puzzle.getRating().getHardest().ordinal()]++;
+        }
+
+        @Override
+        public String toString() {
+            long count = times.getCount();
+            double seconds = nanos / 1e9;
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%s (%d clues, %s..%s): %d puzzles in %.2f s (%.1f puzzles/s)%n",
+                    difficulty, difficulty.getClues(), difficulty.getEasiest(), difficulty.getHardest(),
+                    count, seconds, count / Math.max(seconds, 1e-9)));
+
+            out.append("  clues\n");
+            int peak = 0;
+            for (int c : clues) peak = Math.max(peak, c);
+            for (int c = 0; c < clues.length; c++) {
+                if (clues[c] == 0) continue;
+                out.append(String.format("    %2d %7d %s%n", c, clues[c], bar(clues[c], peak)));
+            }
+
+            out.append(String.format("  time ms     p50 %.2f  p90 %.2f  p99 %.2f  max %.2f  mean %.2f%n",
+                    times.getValueAtPercentile(50) / 1e6, times.getValueAtPercentile(90) / 1e6,
+                    times.getValueAtPercentile(99) / 1e6, times.getMax() / 1e6, times.getMean() / 1e6));
+            out.append(String.format("  search nodes p50 %d  p90 %d  p99 %d  max %d  mean %.0f%n",
+                    nodes.getValueAtPercentile(50), nodes.getValueAtPercentile(90),
+                    nodes.getValueAtPercentile(99), nodes.getMax(), nodes.getMean()));
+
+            out.append("  hardest technique\n");
+            for (Technique technique : Technique.values()) {
+                int n = hardest[technique.ordinal()];
+                if (n == 0) continue;
+                boolean inBand = technique.ordinal() >= difficulty.getEasiest().ordinal()
+                        && technique.ordinal() <= difficulty.getHardest().ordinal();
+                out.append(String.format("    %-14s %7d%s%n", technique, n, inBand ? "" : "  (outside band)"));
+            }
+            return out.toString();
+        }
+
+        private static String bar(int value, int peak) {
+            int width = peak == 0 ? 0 : Math.max(1, (int) ((long) value * BAR_WIDTH / peak));
+            StringBuilder bar = new StringBuilder(width);
+            for (int i = 0; i < width; i++) bar.append('#');
+            return bar.toString();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.LKCC.sudoku.tools;
+
+import com.LKCC.sudoku.engine.LatencyHistogram;
+import com.LKCC.sudoku.engine.SolverType;
+import com.LKCC.sudoku.engine.SudokuSolver;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+// Solves a file of puzzles, one 81-character line each ('0' or '.' for empty cells).
+//
+//   BatchSolve [--threads N] [--solver DLX|BACKTRACKING] input.txt|- output.txt|-
+//
+// The input is streamed in batches through bounded queues, so memory use does not depend on
+// the file size. Workers solve batches in parallel and a writer thread emits the solutions
+// in input order; a line that cannot be solved is echoed followed by a tab and the reason.
+// Throughput, latency percentiles and failures are reported on stderr at the end.
+public class BatchSolve {
+    private static final int BATCH_SIZE = 256;
+    private static final Batch END = new Batch();
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        SolverType type = SolverType.DLX;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--solver":
+                    type = SolverType.valueOf(args[++i]);
+                    break;
+                default:
+                    files.add(args[i]);
+            }
+        }
+        if (threads < 1) {
+            System.err.println("--threads must be at least 1");
+            System.exit(2);
+        }
+        if (files.size() != 2) {
+            System.err.println("usage: BatchSolve [--threads N] [--solver DLX|BACKTRACKING] input.txt|- output.txt|-");
+            System.exit(2);
+        }
+
+        InputStream in = files.get(0).equals("-") ? System.in : new FileInputStream(files.get(0));
+        OutputStream out = files.get(1).equals("-") ? System.out : new FileOutputStream(files.get(1));
+        Report report = run(in, out, threads, type);
+        System.err.println(report);
+        if (report.failures > 0) System.exit(1);
+    }
+
+    // Solve every line of in and write the results to out. Closes neither stream.
+    // A write error, or an exception in a worker, is thrown once all threads have stopped.
+    public static Report run(InputStream in, OutputStream out, int threads, SolverType type)
+            throws IOException, InterruptedException {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        // Every batch goes to a worker through work, and to the writer through ordered.
+        // The bounded ordered queue caps how many batches are in memory at once.
+        final BlockingQueue<Batch> work = new ArrayBlockingQueue<>(threads * 2);
+        final BlockingQueue<Batch> ordered = new ArrayBlockingQueue<>(threads * 4);
+        final Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(work, type.create(null));
+            workers[i].start();
+        }
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16);
+        final Exception[] failure = new Exception[1]; // First write error or worker exception
+        Thread output = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (Batch batch = ordered.take(); batch != END; batch = ordered.take()) {
+                        batch.done.await();
+                        // After a failure keep draining, so the reader never blocks on a full queue
+                        if (failure[0] != null) continue;
+                        if (batch.error != null) {
+                            failure[0] = batch.error;
+                            continue;
+                        }
+                        try {
+                            for (int i = 0; i < batch.size; i++) {
+                                writer.write(batch.results[i]);
+                                writer.write('\n');
+                            }
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                    }
+                    if (failure[0] == null) writer.flush();
+                } catch (IOException e) {
+                    failure[0] = e;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "BatchSolve-writer");
+        output.start();
+
+        long start = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII), 1 << 16);
+        try {
+            Batch batch = new Batch();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.trim().isEmpty()) continue;
+                batch.lines[batch.size++] = line;
+                if (batch.size == BATCH_SIZE) {
+                    ordered.put(batch);
+                    work.put(batch);
+                    batch = new Batch();
+                }
+            }
+            if (batch.size > 0) {
+                ordered.put(batch);
+                work.put(batch);
+            }
+        } finally {
+            // Also after a read error, or the other threads would wait forever
+            ordered.put(END);
+            for (int i = 0; i < threads; i++) work.put(END);
+        }
+        for (Worker worker : workers) worker.join();
+        output.join();
+        if (failure[0] instanceof IOException) throw (IOException) failure[0];
+        if (failure[0] != null) throw (RuntimeException) failure[0];
+
+        Report report = new Report();
+        report.nanos = System.nanoTime() - start;
+        for (Worker worker : workers) {
+            report.latency.add(worker.latency);
+            report.failures += worker.failures;
+        }
+        return report;
+    }
+
+    private static class Batch {
+        final String[] lines = new String[BATCH_SIZE];
+        final String[] results = new String[BATCH_SIZE];
+        final CountDownLatch done = new CountDownLatch(1);
+        int size;
+        RuntimeException error; // Thrown while solving; results are incomplete
+    }
+
+    private static class Worker extends Thread {
+        private final BlockingQueue<Batch> work;
+        private final SudokuSolver solver;
+        private final int[][] board = new int[9][9];
+        private final char[] text = new char[81];
+        final LatencyHistogram latency = new LatencyHistogram();
+        long failures;
+
+        Worker(BlockingQueue<Batch> work, SudokuSolver solver) {
+            super("BatchSolve-worker");
+            this.work = work;
+            this.solver = solver;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Batch batch = work.take(); batch != END; batch = work.take()) {
+                    try {
+                        for (int i = 0; i < batch.size; i++) {
+                            batch.results[i] = solve(batch.lines[i]);
+                        }
+                    } catch (RuntimeException e) {
+                        batch.error = e;
+                    } finally {
+                        batch.done.countDown();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private String solve(String line) {
+            long start = System.nanoTime();
+            String result;
+            if (!parse(line)) {
+                result = line + "\tinvalid";
+                failures++;
+            } else if (!solver.solve(board)) {
+                result = line + "\tunsolvable";
+                failures++;
+            } else {
+                for (int cell = 0; cell < 81; cell++) text[cell] = (char) ('0' + board[cell / 9][cell % 9]);
+                result = new String(text);
+            }
+            latency.record(System.nanoTime() - start);
+            return result;
+        }
+
+        private boolean parse(String line) {
+            if (line.length() < 81) return false;
+            for (int cell = 0; cell < 81; cell++) {
+                char ch = line.charAt(cell);
+                if (ch == '.' || ch == '0') {
+                    board[cell / 9][cell % 9] = 0;
+                } else if (ch >= '1' && ch <= '9') {
+                    board[cell / 9][cell % 9] = ch - '0';
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static class Report {
+        final LatencyHistogram latency = new LatencyHistogram();
+        long failures;
+        long nanos;
+
+        @Override
+        public String toString() {
+            long count = latency.getCount();
+            double seconds = nanos / 1e9;
+            return String.format("%d puzzles in %.2f s (%.0f puzzles/s), latency p50 %.1f us, p99 %.1f us, max %.1f us, %d failures",
+                    count, seconds, count / Math.max(seconds, 1e-9),
+                    latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3,
+                    latency.getMax() / 1e3, failures);
+        }
+    }
+}
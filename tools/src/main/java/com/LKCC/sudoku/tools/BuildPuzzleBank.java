@@ -0,0 +1,101 @@
+package com.LKCC.sudoku.tools;
+
+import com.LKCC.sudoku.engine.Difficulty;
+import com.LKCC.sudoku.engine.DifficultyRating;
+import com.LKCC.sudoku.engine.Puzzle;
+import com.LKCC.sudoku.engine.PuzzleBank;
+import com.LKCC.sudoku.engine.PuzzleGenerator;
+import com.LKCC.sudoku.engine.SolverType;
+import com.LKCC.sudoku.engine.Technique;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Generates the puzzle bank asset read by PuzzleBank.
+//
+//   BuildPuzzleBank [--count N] [--seed S] [--band clues:EASIEST:HARDEST[:count] ...] output.bank
+//
+// Without --band one band per Difficulty is built, with a fifth of the puzzles for
+// minimal-search bands. Only puzzles whose rating falls inside the band are kept, and
+// duplicates are dropped.
+public class BuildPuzzleBank {
+    public static void main(String[] args) throws IOException {
+        int count = 500;
+        long seed = 1;
+        List<String> bands = new ArrayList<>();
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--count":
+                    count = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--band":
+                    bands.add(args[++i]);
+                    break;
+                default:
+                    output = args[i];
+            }
+        }
+        if (output == null) {
+            System.err.println("usage: BuildPuzzleBank [--count N] [--seed S] [--band clues:EASIEST:HARDEST[:count] ...] output.bank");
+            System.exit(2);
+        }
+        if (bands.isEmpty()) {
+            for (Difficulty difficulty : Difficulty.values()) {
+                String band = difficulty.getClues() + ":" + difficulty.getEasiest() + ":" + difficulty.getHardest();
+                // Minimal-search bands take about a second per puzzle
+                bands.add(difficulty.getClues() < PuzzleGenerator.MINIMAL_SEARCH_BELOW ? band + ":/5" : band);
+            }
+        }
+
+        PuzzleGenerator generator = new PuzzleGenerator(SolverType.DLX, new Random(seed));
+        File file = new File(output);
+        if (file.getParentFile() != null) file.getParentFile().mkdirs();
+        try (PuzzleBank.Writer writer = new PuzzleBank.Writer(file, bands.size())) {
+            for (String band : bands) {
+                String[] parts = band.split(":");
+                int clues = Integer.parseInt(parts[0]);
+                Technique easiest = Technique.valueOf(parts[1]);
+                Technique hardest = Technique.valueOf(parts[2]);
+                int target = count;
+                if (parts.length > 3) {
+                    target = parts[3].startsWith("/") ? Math.max(1, count / Integer.parseInt(parts[3].substring(1)))
+                            : Integer.parseInt(parts[3]);
+                }
+                writer.addBand(clues, easiest, hardest);
+
+                long start = System.nanoTime();
+                Set<String> seen = new HashSet<>();
+                int attempts = 0;
+                while (seen.size() < target) {
+                    attempts++;
+                    Puzzle puzzle = generator.generate(clues, easiest, hardest, null, null);
+                    DifficultyRating rating = puzzle.getRating();
+                    int level = rating.getHardest().ordinal();
+                    if (level < easiest.ordinal() || level > hardest.ordinal()) continue;
+                    if (!seen.add(key(puzzle.getBoard()))) continue;
+                    writer.add(puzzle.getBoard());
+                }
+                System.out.printf("%s: %d puzzles from %d attempts in %.1f s%n",
+                        band, target, attempts, (System.nanoTime() - start) / 1e9);
+            }
+        }
+        System.out.println("Wrote " + file + " (" + file.length() + " bytes)");
+    }
+
+    private static String key(int[][] board) {
+        StringBuilder key = new StringBuilder(81);
+        for (int[] row : board) {
+            for (int digit : row) key.append((char) ('0' + digit));
+        }
+        return key.toString();
+    }
+}